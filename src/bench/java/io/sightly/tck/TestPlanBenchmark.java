@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright 2014 Adobe Systems Incorporated
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package io.sightly.tck;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.sightly.tck.plan.TestPlan;
+import io.sightly.tck.tests.TestBuilder;
+import junit.framework.TestCase;
+
+/**
+ * Benchmarks building the tests from all the shipped test definitions: reading the definitions, compiling them into a plan, reading
+ * the compiled plan and creating the JUnit tests.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TestPlanBenchmark {
+
+    private ResourceIndex resources;
+    private List<JSONObject> definitions;
+    private TestPlan plan;
+    private byte[] compiledPlan;
+
+    @Setup
+    public void setUp() throws IOException, URISyntaxException {
+        System.setProperty(Constants.SYS_PROP_SERVER_URL, "http://localhost:8080");
+        File codeSource = new File(TCK.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        resources = ResourceIndex.create(codeSource, "testfiles/");
+        definitions = TCK.readTestDefinitions(resources);
+        plan = TestPlan.compile(definitions);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        plan.write(out);
+        compiledPlan = out.toByteArray();
+    }
+
+    @Benchmark
+    public List<JSONObject> getTestDefinitions() {
+        return TCK.readTestDefinitions(resources);
+    }
+
+    @Benchmark
+    public TestPlan compilePlan() {
+        return TestPlan.compile(definitions);
+    }
+
+    @Benchmark
+    public TestPlan readPlan() throws IOException {
+        return TestPlan.read(new ByteArrayInputStream(compiledPlan));
+    }
+
+    @Benchmark
+    public List<TestCase> getTests() {
+        return TestBuilder.getTests(plan);
+    }
+
+    @Benchmark
+    public int getTestsFromDefinitions() {
+        int tests = 0;
+        for (JSONObject definition : definitions) {
+            tests += TestBuilder.getTests(definition).size();
+        }
+        return tests;
+    }
+}
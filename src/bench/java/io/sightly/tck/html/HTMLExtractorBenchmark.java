@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * Copyright 2014 Adobe Systems Incorporated
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package io.sightly.tck.html;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.jsoup.nodes.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the {@link HTMLExtractor} methods over a small and a large document. The extractor methods go through the page and
+ * selection caches, like the TCK's test cases do; {@link #parse()} and {@link #select()} measure the uncached parsing and selector
+ * evaluation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HTMLExtractorBenchmark {
+
+    private static final String URL = "http://localhost/bench.html";
+    private static final String SELECTOR = "#section-0 > div.item:eq(2)";
+
+    @Param({"10", "10000"})
+    public int items;
+
+    private String markup;
+    private byte[] bytes;
+    private Document document;
+    private SelectorCache selectorCache;
+
+    @Setup
+    public void setUp() throws IOException {
+        markup = markup(items);
+        bytes = markup.getBytes("UTF-8");
+        document = HTMLExtractor.parseDocument(new ByteArrayInputStream(bytes), "UTF-8", URL);
+        selectorCache = new SelectorCache(16);
+        HTMLExtractor.parse(URL, markup);
+    }
+
+    @TearDown
+    public void tearDown() {
+        HTMLExtractor.release(URL);
+    }
+
+    @Benchmark
+    public Document parse() throws IOException {
+        return HTMLExtractor.parseDocument(new ByteArrayInputStream(bytes), "UTF-8", URL);
+    }
+
+    @Benchmark
+    public Object select() {
+        return selectorCache.select(SELECTOR, document);
+    }
+
+    @Benchmark
+    public String innerHTML() {
+        return HTMLExtractor.innerHTML(URL, markup, SELECTOR);
+    }
+
+    @Benchmark
+    public boolean contains() {
+        return HTMLExtractor.contains(URL, markup, SELECTOR, "item 2");
+    }
+
+    @Benchmark
+    public boolean exists() {
+        return HTMLExtractor.exists(URL, markup, SELECTOR);
+    }
+
+    @Benchmark
+    public boolean hasAttribute() {
+        return HTMLExtractor.hasAttribute(URL, markup, SELECTOR, "data-index");
+    }
+
+    @Benchmark
+    public boolean hasAttributeValue() {
+        return HTMLExtractor.hasAttributeValue(URL, markup, SELECTOR, "data-index", "2");
+    }
+
+    @Benchmark
+    public boolean hasChildren() {
+        return HTMLExtractor.hasChildren(URL, markup, SELECTOR, 1);
+    }
+
+    @Benchmark
+    public boolean hasClosingTag() {
+        return HTMLExtractor.hasClosingTag(URL, markup, SELECTOR);
+    }
+
+    private static String markup(int items) {
+        StringBuilder sb = new StringBuilder("<!DOCTYPE html><html><head><title>bench</title></head><body>");
+        int sections = Math.max(1, items / 10);
+        for (int section = 0; section < sections; section++) {
+            sb.append("<section id=\"section-").append(section).append("\">");
+            for (int item = 0; item < Math.min(items, 10); item++) {
+                sb.append("<div class=\"item\" data-index=\"").append(item).append("\"><span>item ").append(item).append("</span></div>");
+            }
+            sb.append("</section>");
+        }
+        return sb.append("</body></html>").toString();
+    }
+}
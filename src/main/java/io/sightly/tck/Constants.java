@@ -34,4 +34,144 @@ public final class Constants {
      * System property for retrieving the URL used for running the TCK.
      */
     public static final String SYS_PROP_SERVER_URL = "io.sightly.tck.serverURL";
+
+    /**
+     * System property for retrieving the number of threads used for running the tests concurrently. Defaults to {@code 1}.
+     */
+    public static final String SYS_PROP_THREADS = "io.sightly.tck.threads";
+
+    /**
+     * System property for retrieving the maximum number of URLs fetched concurrently before running the tests. Defaults to {@code 4};
+     * {@code 0} disables prefetching, in which case each URL is fetched by the first test that needs it.
+     */
+    public static final String SYS_PROP_PREFETCH = "io.sightly.tck.prefetch";
+
+    /**
+     * System property for retrieving the maximum number of pooled HTTP connections to the server under test. Defaults to {@code 20}.
+     */
+    public static final String SYS_PROP_MAX_CONNECTIONS_PER_HOST = "io.sightly.tck.maxConnectionsPerHost";
+
+    /**
+     * System property for retrieving the maximum number of pooled HTTP connections. Defaults to {@code 100}.
+     */
+    public static final String SYS_PROP_MAX_CONNECTIONS = "io.sightly.tck.maxConnections";
+
+    /**
+     * System property for retrieving the time in milliseconds after which idle pooled HTTP connections are closed. Defaults to {@code
+     * 30000}.
+     */
+    public static final String SYS_PROP_IDLE_CONNECTION_TIMEOUT = "io.sightly.tck.idleConnectionTimeout";
+
+    /**
+     * System property for retrieving the maximum size in bytes of a response body. Defaults to {@code 0}, which doesn't limit the size.
+     */
+    public static final String SYS_PROP_MAX_BODY_SIZE = "io.sightly.tck.maxBodySize";
+
+    /**
+     * System property for retrieving the maximum number of compiled CSS selectors kept in memory. Defaults to {@code 1024}.
+     */
+    public static final String SYS_PROP_SELECTOR_CACHE_SIZE = "io.sightly.tck.selectorCacheSize";
+
+    /**
+     * System property for retrieving the maximum number of parsed pages kept in memory. The pages fetched for the tests are kept until
+     * their last test has run and don't count against the limit. Defaults to {@code 0}, which doesn't limit the number of pages.
+     */
+    public static final String SYS_PROP_DOCUMENT_CACHE_SIZE = "io.sightly.tck.documentCacheSize";
+
+    /**
+     * System property for retrieving the maximum estimated size in bytes of the parsed pages kept in memory. The pages fetched for the
+     * tests are kept until their last test has run and don't count against the limit. Defaults to {@code 0}, which doesn't limit the
+     * size.
+     */
+    public static final String SYS_PROP_DOCUMENT_CACHE_BYTES = "io.sightly.tck.documentCacheBytes";
+
+    /**
+     * System property for enabling the evaluation of the selectors of all the tests using a URL in a single traversal of the page.
+     * Defaults to {@code true}.
+     */
+    public static final String SYS_PROP_BATCH = "io.sightly.tck.batch";
+
+    /**
+     * System property defining the folder where the metrics of a test run are exported, as JSON and in the Prometheus text exposition
+     * format. Defaults to no export.
+     */
+    public static final String SYS_PROP_METRICS_DIR = "io.sightly.tck.metricsDir";
+
+    /**
+     * System property defining the comma separated patterns of the suites to run; patterns starting with {@code !} exclude suites.
+     * Defaults to all the suites.
+     */
+    public static final String SYS_PROP_SUITE = "io.sightly.tck.suite";
+
+    /**
+     * System property defining the comma separated patterns of the groups to run; patterns starting with {@code !} exclude groups.
+     * Defaults to all the groups.
+     */
+    public static final String SYS_PROP_GROUP = "io.sightly.tck.group";
+
+    /**
+     * System property defining the comma separated patterns of the case selectors to run; patterns starting with {@code !} exclude
+     * cases. The commas of selector groups, e.g. {@code div\, span}, are escaped with a backslash. Defaults to all the cases.
+     */
+    public static final String SYS_PROP_CASE = "io.sightly.tck.case";
+
+    /**
+     * System property selecting the shard of the test plan run by this JVM, as {@code I/N} with {@code 1 <= I <= N}. Each of the
+     * {@code N} shards runs the tests of a distinct subset of the URLs. Defaults to running all the tests.
+     */
+    public static final String SYS_PROP_SHARD = "io.sightly.tck.shard";
+
+    /**
+     * System property defining the file where the outcome of each test case and the hash of each URL's response body are saved.
+     * Defaults to {@link #DEFAULT_RESULTS_FILE} if {@link #SYS_PROP_RERUN_FAILED} or {@link #SYS_PROP_CHANGED_ONLY} are enabled, and to
+     * not saving the results otherwise.
+     */
+    public static final String SYS_PROP_RESULTS_FILE = "io.sightly.tck.resultsFile";
+
+    /**
+     * System property for running only the test cases which failed in the previous run saved in the results file. Defaults to
+     * {@code false}.
+     */
+    public static final String SYS_PROP_RERUN_FAILED = "io.sightly.tck.rerunFailed";
+
+    /**
+     * System property for running only the test cases whose URL responds with a different body than in the previous run saved in the
+     * results file. Defaults to {@code false}.
+     */
+    public static final String SYS_PROP_CHANGED_ONLY = "io.sightly.tck.changedOnly";
+
+    /**
+     * System property for accepting compressed ({@code gzip} or {@code deflate}) responses, which are decompressed while they are
+     * parsed. Defaults to {@code false}.
+     */
+    public static final String SYS_PROP_COMPRESSION = "io.sightly.tck.compression";
+
+    /**
+     * System property defining the folder of the persistent HTTP response cache, which allows revalidating the responses fetched in
+     * previous runs instead of downloading them again. Defaults to no caching.
+     */
+    public static final String SYS_PROP_HTTP_CACHE_DIR = "io.sightly.tck.httpCacheDir";
+
+    /**
+     * System property defining the maximum size in bytes of the persistent HTTP response cache. Defaults to
+     * {@link io.sightly.tck.http.ResponseCache#DEFAULT_MAX_SIZE}.
+     */
+    public static final String SYS_PROP_HTTP_CACHE_SIZE = "io.sightly.tck.httpCacheSize";
+
+    /**
+     * System property defining the archive file where all the responses received from the server are recorded. Defaults to no
+     * recording.
+     */
+    public static final String SYS_PROP_RECORD_FILE = "io.sightly.tck.recordFile";
+
+    /**
+     * System property defining an archive file, written by a previous recording run, from which all the responses are replayed instead
+     * of being requested from the server. Defaults to no replaying.
+     */
+    public static final String SYS_PROP_REPLAY_FILE = "io.sightly.tck.replayFile";
+
+    /**
+     * The default results file, relative to the working directory.
+     */
+    public static final String DEFAULT_RESULTS_FILE = "tck-results.json";
 }
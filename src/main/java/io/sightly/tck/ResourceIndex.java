@@ -0,0 +1,240 @@
+/*******************************************************************************
+ * Copyright 2014 Adobe Systems Incorporated
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package io.sightly.tck;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+
+/**
+ * Index of the TCK's embedded resources, built once over the TCK's code source, which can either be a jar file or a classpath folder.
+ * Resources are identified by their path relative to the code source's root, using {@code /} as separator; folders' paths end with
+ * {@code /}.
+ */
+final class ResourceIndex {
+
+    private final Map<String, Resource> resources;
+
+    private ResourceIndex(Map<String, Resource> resources) {
+        this.resources = Collections.unmodifiableMap(resources);
+    }
+
+    /**
+     * Builds the index of the resources found under {@code prefix} in the {@code codeSource}.
+     *
+     * @param codeSource a jar file or a classpath folder
+     * @param prefix     the path prefix of the indexed resources
+     * @return the resource index
+     * @throws IOException if the code source cannot be read
+     */
+    static ResourceIndex create(File codeSource, String prefix) throws IOException {
+        Map<String, Resource> resources = new TreeMap<String, Resource>();
+        if (codeSource.isDirectory()) {
+            File root = new File(codeSource, prefix);
+            if (root.isDirectory()) {
+                indexFolder(root, prefix.endsWith("/") ? prefix : prefix + "/", resources);
+            }
+        } else {
+            JarFile jarFile = new JarFile(codeSource);
+            Enumeration<JarEntry> entries = jarFile.entries();
+            while (entries.hasMoreElements()) {
+                JarEntry entry = entries.nextElement();
+                if (entry.getName().startsWith(prefix)) {
+                    resources.put(entry.getName(), new JarResource(jarFile, entry));
+                }
+            }
+        }
+        return new ResourceIndex(resources);
+    }
+
+    /**
+     * Lists the resources whose path starts with {@code prefix}, in lexicographic order of their paths.
+     *
+     * @param prefix the path prefix
+     * @return the resources
+     */
+    List<Resource> list(String prefix) {
+        List<Resource> list = new ArrayList<Resource>();
+        for (Map.Entry<String, Resource> entry : resources.entrySet()) {
+            if (entry.getKey().startsWith(prefix)) {
+                list.add(entry.getValue());
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Returns the resource with the given path.
+     *
+     * @param name the resource's path
+     * @return the resource, or {@code null} if there's no such resource
+     */
+    Resource get(String name) {
+        return resources.get(name);
+    }
+
+    private static void indexFolder(File folder, String path, Map<String, Resource> resources) {
+        resources.put(path, new FileResource(folder, path));
+        File[] children = folder.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File child : children) {
+            if (child.isDirectory()) {
+                indexFolder(child, path + child.getName() + "/", resources);
+            } else {
+                String childPath = path + child.getName();
+                resources.put(childPath, new FileResource(child, childPath));
+            }
+        }
+    }
+
+    /**
+     * An indexed resource.
+     */
+    abstract static class Resource {
+
+        private final String name;
+
+        Resource(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Returns the resource's path.
+         *
+         * @return the path
+         */
+        String getName() {
+            return name;
+        }
+
+        /**
+         * Checks if the resource is a folder.
+         *
+         * @return {@code true} if the resource is a folder, {@code false} otherwise
+         */
+        boolean isDirectory() {
+            return name.endsWith("/");
+        }
+
+        /**
+         * Returns the resource's size in bytes.
+         *
+         * @return the size, or {@code -1} if unknown
+         */
+        abstract long getSize();
+
+        /**
+         * Returns the CRC-32 checksum of the resource's content.
+         *
+         * @return the checksum, or {@code -1} if unknown
+         * @throws IOException if the checksum has to be computed and the resource cannot be read
+         */
+        abstract long getCrc() throws IOException;
+
+        /**
+         * Opens the resource for reading.
+         *
+         * @return a stream providing the resource's content
+         * @throws IOException if the resource cannot be read
+         */
+        abstract InputStream open() throws IOException;
+    }
+
+    private static class JarResource extends Resource {
+
+        private final JarFile jarFile;
+        private final JarEntry entry;
+
+        JarResource(JarFile jarFile, JarEntry entry) {
+            super(entry.getName());
+            this.jarFile = jarFile;
+            this.entry = entry;
+        }
+
+        @Override
+        long getSize() {
+            return entry.getSize();
+        }
+
+        @Override
+        long getCrc() {
+            return entry.getCrc();
+        }
+
+        @Override
+        InputStream open() throws IOException {
+            return jarFile.getInputStream(entry);
+        }
+    }
+
+    private static class FileResource extends Resource {
+
+        private final File file;
+
+        FileResource(File file, String name) {
+            super(name);
+            this.file = file;
+        }
+
+        @Override
+        long getSize() {
+            return file.isFile() ? file.length() : -1;
+        }
+
+        @Override
+        long getCrc() throws IOException {
+            return file.isFile() ? crc(file) : -1;
+        }
+
+        @Override
+        InputStream open() throws IOException {
+            return new FileInputStream(file);
+        }
+    }
+
+    /**
+     * Computes the CRC-32 checksum of a file's content.
+     *
+     * @param file the file
+     * @return the checksum
+     * @throws IOException if the file cannot be read
+     */
+    static long crc(File file) throws IOException {
+        CheckedInputStream in = new CheckedInputStream(new FileInputStream(file), new CRC32());
+        try {
+            byte[] buffer = new byte[8192];
+            while (in.read(buffer) != -1) {
+                // computing the checksum
+            }
+            return in.getChecksum().getValue();
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -21,11 +21,27 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URISyntaxException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.util.ArrayList;
-import java.util.Enumeration;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
@@ -34,14 +50,34 @@ import org.apache.commons.cli.OptionBuilder;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 import org.apache.commons.cli.PosixParser;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.json.JSONObject;
+import org.json.JSONTokener;
 import org.junit.runner.JUnitCore;
 import org.junit.runner.Result;
 import org.junit.runner.notification.Failure;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import io.sightly.tck.bench.RenderBenchmark;
+import io.sightly.tck.bench.ScriptStats;
+import io.sightly.tck.html.HTMLExtractor;
+import io.sightly.tck.html.SelectorCache;
+import io.sightly.tck.http.Client;
+import io.sightly.tck.http.ResponseCache;
+import io.sightly.tck.metrics.Histogram;
+import io.sightly.tck.metrics.Metrics;
+import io.sightly.tck.metrics.Phase;
+import io.sightly.tck.plan.PlanFilter;
+import io.sightly.tck.plan.PlannedCase;
+import io.sightly.tck.plan.Shard;
+import io.sightly.tck.plan.TestPlan;
+import io.sightly.tck.results.ResultsStore;
+import io.sightly.tck.results.RunSummary;
+import io.sightly.tck.server.ReferenceServer;
+import io.sightly.tck.tests.TestBuilder;
+
 /**
  * The {@code TCK} singleton is the main entry point for standalone TCK execution.
  */
@@ -70,19 +106,92 @@ public enum TCK {
     private static final String CLI_AUTH_USER_DESCRIPTION = "in case Basic auth is needed this option defines the username";
     private static final String CLI_AUTH_PASS = "authPass";
     private static final String CLI_AUTH_PASS_DESCRIPTION = "in case Basic auth is needed this option defines the password";
+    private static final String CLI_THREADS = "threads";
+    private static final String CLI_THREADS_DESCRIPTION = "defines the number of threads used for running the tests concurrently (default 1)";
+    private static final String CLI_PREFETCH = "prefetch";
+    private static final String CLI_PREFETCH_DESCRIPTION = "defines the maximum number of URLs fetched concurrently before running the tests (default " +
+            "4, 0 disables prefetching)";
+
+    private static final String CLI_METRICS = "metrics";
+    private static final String CLI_METRICS_DESCRIPTION = "export the run's metrics as JSON and in the Prometheus text format in the " +
+            "specified folder";
+
+    private static final String CLI_BENCH = "bench";
+    private static final String CLI_BENCH_DESCRIPTION = "instead of running the tests, measure the render latency of each script used by " +
+            "the tests";
+    private static final String CLI_WARMUP = "warmup";
+    private static final String CLI_WARMUP_DESCRIPTION = "defines the number of warm-up requests per script in bench mode (default 10)";
+    private static final String CLI_REQUESTS = "requests";
+    private static final String CLI_REQUESTS_DESCRIPTION = "defines the number of measured requests per script in bench mode (default 100)";
+    private static final String CLI_CONCURRENCY = "concurrency";
+    private static final String CLI_CONCURRENCY_DESCRIPTION = "defines the number of concurrent requests in bench mode (default 1)";
+    private static final String CLI_BENCH_REPORT = "benchReport";
+    private static final String CLI_BENCH_REPORT_DESCRIPTION = "write the bench mode results as JSON to the specified file";
+
+    private static final String CLI_SUITE = "suite";
+    private static final String CLI_SUITE_DESCRIPTION = "run only the suites matching the comma separated patterns; '*' matches any " +
+            "characters and patterns starting with '!' exclude suites";
+    private static final String CLI_GROUP = "group";
+    private static final String CLI_GROUP_DESCRIPTION = "run only the groups matching the comma separated patterns";
+    private static final String CLI_CASE = "case";
+    private static final String CLI_CASE_DESCRIPTION = "run only the cases whose selectors match the comma separated patterns; the " +
+            "commas of selector groups are escaped as '\\,'";
+    private static final String CLI_RESULTS = "results";
+    private static final String CLI_RESULTS_DESCRIPTION = "the file where the outcome of each test and the hash of each script's output " +
+            "are saved (default " + Constants.DEFAULT_RESULTS_FILE + " with --rerun-failed or --changed-only; otherwise the results are " +
+            "only saved if this option is set)";
+    private static final String CLI_RERUN_FAILED = "rerun-failed";
+    private static final String CLI_RERUN_FAILED_DESCRIPTION = "run only the tests which failed in the previous run";
+    private static final String CLI_CHANGED_ONLY = "changed-only";
+    private static final String CLI_CHANGED_ONLY_DESCRIPTION = "run only the tests of the scripts whose output changed since the " +
+            "previous run";
+    private static final String CLI_SHARD = "shard";
+    private static final String CLI_SHARD_DESCRIPTION = "run only the I-th of N shards of the tests, partitioned by URL, e.g. 2/4; unless " +
+            "--results is set, the shard's results are saved to tck-results-I-of-N.json";
+    private static final String CLI_MERGE = "merge";
+    private static final String CLI_MERGE_DESCRIPTION = "merge the results files saved by the shards of a run into the --results file " +
+            "and print the run's summary";
+    private static final String CLI_COMPRESSION = "compression";
+    private static final String CLI_COMPRESSION_DESCRIPTION = "accept gzip or deflate compressed responses from the server";
+    private static final String CLI_HTTP_CACHE = "httpCache";
+    private static final String CLI_HTTP_CACHE_DESCRIPTION = "the folder of a persistent HTTP cache, used for revalidating the scripts' " +
+            "output fetched in previous runs instead of downloading it again; ignored by --bench";
+    private static final String CLI_HTTP_CACHE_SIZE = "httpCacheSize";
+    private static final String CLI_HTTP_CACHE_SIZE_DESCRIPTION = "the maximum size in bytes of the HTTP cache (default " +
+            ResponseCache.DEFAULT_MAX_SIZE + ")";
+    private static final String CLI_RECORD = "record";
+    private static final String CLI_RECORD_DESCRIPTION = "record all the responses received from the server in an archive file";
+    private static final String CLI_REPLAY = "replay";
+    private static final String CLI_REPLAY_DESCRIPTION = "replay the responses recorded in an archive file instead of requesting them " +
+            "from a server; --url is not needed";
+    private static final String CLI_SERVE = "serve";
+    private static final String CLI_SERVE_DESCRIPTION = "serve the expected output files at the URLs used by the test definitions on the " +
+            "specified port (default " + 8080 + ")";
+    private static final String CLI_REFERENCE = "reference";
+    private static final String CLI_REFERENCE_DESCRIPTION = "run the tests, or the benchmark, against an embedded server serving the " +
+            "expected output files instead of an HTL engine";
+
+    private static final int DEFAULT_SERVE_PORT = 8080;
+    private static final String REPLAY_SERVER_URL = "http://localhost";
+    private static final int DEFAULT_WARMUP_REQUESTS = 10;
+    private static final int DEFAULT_REQUESTS = 100;
 
-    private JarFile jarFile;
+    private static final long COPY_CHUNK_SIZE = 64 * 1024;
+
+    private ResourceIndex resources;
     private List<JSONObject> testDefinitions;
+    private TestPlan testPlan;
 
 
     TCK() {
-        String jarPath = TCK.class.getProtectionDomain().getCodeSource().getLocation().getPath();
         try {
-            jarFile = new JarFile(jarPath);
+            File codeSource = new File(TCK.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+            resources = ResourceIndex.create(codeSource, TESTFILES);
+        } catch (URISyntaxException e) {
+            throw new RuntimeException("Unable to instantiate TCK.", e);
         } catch (IOException e) {
             throw new RuntimeException("Unable to instantiate TCK.", e);
         }
-        testDefinitions = new ArrayList<JSONObject>();
     }
 
     private void run() {
@@ -91,6 +200,18 @@ public enum TCK {
         Result result = jUnitCore.run(TestsRunner.suite());
         LOG.info(String.format("Tests run: %d, Failures: %d, Time elapsed: %.3f sec%n", result.getRunCount(),
                 result.getFailureCount(), result.getRunTime() / 1000f));
+        SelectorCache selectorCache = HTMLExtractor.getSelectorCache();
+        LOG.debug("Selector cache: {} hits, {} misses, {} cached selectors.", new Object[] {selectorCache.getHits(),
+                selectorCache.getMisses(), selectorCache.size()});
+        if (LOG.isDebugEnabled()) {
+            for (Phase phase : Phase.values()) {
+                Histogram histogram = Metrics.getHistogram(phase);
+                LOG.debug(String.format("Phase %s: count %d, total %.3f ms, p50 %.3f ms, p99 %.3f ms, max %.3f ms.", phase.getLabel(),
+                        histogram.getCount(), histogram.getSum() / 1e6, histogram.getPercentile(50) / 1e6,
+                        histogram.getPercentile(99) / 1e6, histogram.getMax() / 1e6));
+            }
+            LOG.debug("Response bodies: {} bytes received, {} bytes decoded.", Metrics.getWireBytes(), Metrics.getDecodedBytes());
+        }
         if (result.getFailures().size() > 0) {
             for (Failure f : result.getFailures()) {
                 LOG.error(f.toString());
@@ -105,6 +226,129 @@ public enum TCK {
         }
     }
 
+    private void bench(int warmupRequests, int requests, int concurrency, String reportPath) throws IOException {
+        String serverURL = System.getProperty(Constants.SYS_PROP_SERVER_URL);
+        Map<String, Integer> scripts = new LinkedHashMap<String, Integer>();
+        TestPlan plan = getTestPlan().filter(PlanFilter.fromSystemProperties());
+        Shard shard = Shard.fromSystemProperties();
+        Set<String> shardUrls = shard == null ? null : shard.getUrls(plan);
+        for (PlannedCase testCase : plan.getCases()) {
+            if (shardUrls != null && !shardUrls.contains(testCase.getUrl())) {
+                continue;
+            }
+            String url = serverURL + testCase.getUrl();
+            if (!scripts.containsKey(url)) {
+                scripts.put(url, testCase.getExpectedStatusCode());
+            }
+        }
+        RenderBenchmark benchmark = new RenderBenchmark(TestBuilder.getClient(), warmupRequests, requests, concurrency);
+        LOG.info("Benchmarking {} scripts with {} warm-up and {} measured requests each, {} concurrent requests.", new Object[] {
+                scripts.size(), warmupRequests, requests, concurrency});
+        List<ScriptStats> stats;
+        Metrics.reset();
+        try {
+            stats = benchmark.run(scripts);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while benchmarking the scripts.");
+        }
+        int errors = 0;
+        long wireBytes = 0;
+        long decodedBytes = 0;
+        LOG.info(String.format("%-60s %9s %9s %9s %9s %9s %7s", "Script", "p50 (ms)", "p90 (ms)", "p99 (ms)", "max (ms)", "req/s",
+                "errors"));
+        for (ScriptStats script : stats) {
+            LOG.info(String.format("%-60s %9.3f %9.3f %9.3f %9.3f %9.1f %7d", script.getUrl().substring(serverURL.length()),
+                    script.getPercentile(50) / 1e6, script.getPercentile(90) / 1e6, script.getPercentile(99) / 1e6,
+                    script.getMax() / 1e6, script.getRequestsPerSecond(), script.getErrors()));
+            errors += script.getErrors();
+            wireBytes += script.getWireBytes();
+            decodedBytes += script.getDecodedBytes();
+        }
+        LOG.info("Response bodies of the measured requests: {} bytes received, {} bytes decoded.", wireBytes, decodedBytes);
+        if (reportPath != null) {
+            Writer writer = new OutputStreamWriter(new FileOutputStream(reportPath), "UTF-8");
+            try {
+                writer.write(benchmark.toJSON(stats).toString(2));
+            } finally {
+                writer.close();
+            }
+            LOG.info("Wrote the benchmark report to {}.", reportPath);
+        }
+        if (errors > 0) {
+            LOG.error("{} requests failed.", errors);
+            die();
+        }
+    }
+
+    /**
+     * Merges the results files saved by the shards of a run into the {@code target} file and logs the merged run's summary, like
+     * {@link #run()} does for a single run.
+     */
+    private void merge(String[] files, File target) throws IOException {
+        ResultsStore merged = ResultsStore.create(target);
+        List<RunSummary> runs = new ArrayList<RunSummary>(files.length);
+        for (String path : files) {
+            File file = new File(path);
+            if (!file.isFile()) {
+                throw new IOException("Cannot find results file " + file.getAbsolutePath() + ".");
+            }
+            ResultsStore results = ResultsStore.load(file);
+            if (results.getLastRun() == null) {
+                throw new IOException("Results file " + file.getAbsolutePath() + " doesn't contain a run summary.");
+            }
+            merged.putAll(results);
+            runs.add(results.getLastRun());
+        }
+        RunSummary summary = RunSummary.merge(runs);
+        merged.setLastRun(summary);
+        merged.save();
+        LOG.info("Merged {} results files into {}.", files.length, target.getAbsolutePath());
+        LOG.info(String.format("Tests run: %d, Failures: %d, Time elapsed: %.3f sec%n", summary.getTests(),
+                summary.getFailures().size(), summary.getTime() / 1000f));
+        if (summary.getFailures().size() > 0) {
+            for (String failure : summary.getFailures().values()) {
+                LOG.error(failure);
+            }
+            die();
+        }
+    }
+
+    /**
+     * Creates a server which serves the expected markup of each test definition at the definition's URL, responding with the
+     * definition's expected status code.
+     */
+    private ReferenceServer createReferenceServer() throws IOException {
+        ReferenceServer server = new ReferenceServer();
+        Set<String> urls = new HashSet<String>();
+        for (PlannedCase testCase : getTestPlan().getCases()) {
+            String url = testCase.getUrl();
+            String expectedMarkup = testCase.getExpectedMarkup();
+            if (expectedMarkup == null || !urls.add(url)) {
+                continue;
+            }
+            ResourceIndex.Resource resource = resources.get(StringUtils.removeStart(expectedMarkup, "/"));
+            if (resource == null) {
+                LOG.warn("Cannot find the expected markup {} for {}.", expectedMarkup, url);
+                continue;
+            }
+            InputStream in = resource.open();
+            try {
+                server.addPage(url, testCase.getExpectedStatusCode(), IOUtils.toByteArray(in));
+            } finally {
+                in.close();
+            }
+        }
+        return server;
+    }
+
+    private ReferenceServer startReferenceServer(InetSocketAddress address) throws IOException {
+        ReferenceServer server = createReferenceServer();
+        server.start(address, Math.max(4, Runtime.getRuntime().availableProcessors()));
+        LOG.info("Serving {} expected output files on port {}.", server.getPages(), server.getPort());
+        return server;
+    }
+
     private void extract(String extractDir) throws IOException {
         File extractFolder = new File(extractDir);
         if (extractFolder.exists()) {
@@ -119,72 +363,205 @@ public enum TCK {
                 throw new IOException("Unable to create folder " + extractFolder.getAbsolutePath() + ".");
             }
         }
-        Enumeration<JarEntry> entries = jarFile.entries();
-        while (entries.hasMoreElements()) {
-            JarEntry entry = entries.nextElement();
-            String entryName = entry.getName();
-            if (entryName.startsWith(TESTFILES)) {
-                File file = new File(extractFolder, entryName);
-                if (entry.isDirectory()) {
-                    if (!file.mkdir()) {
-                        throw new IOException("Unable to create folder " + file.getAbsolutePath());
-                    }
-                    continue;
+        extract(resources, extractFolder);
+    }
+
+    /**
+     * Extracts the test files from a resource index into a folder, concurrently. The files which already have the resource's size and
+     * CRC are not written again.
+     *
+     * @param resources     the resource index
+     * @param extractFolder the folder
+     * @return the number of files which were written
+     * @throws IOException if the files cannot be extracted
+     */
+    static int extract(ResourceIndex resources, File extractFolder) throws IOException {
+        List<ResourceIndex.Resource> files = new ArrayList<ResourceIndex.Resource>();
+        for (ResourceIndex.Resource resource : resources.list(TESTFILES)) {
+            if (resource.isDirectory()) {
+                File folder = new File(extractFolder, resource.getName());
+                if (!folder.isDirectory() && !folder.mkdirs()) {
+                    throw new IOException("Unable to create folder " + folder.getAbsolutePath());
                 }
-                InputStream is = null;
-                FileOutputStream fos = null;
-                try {
-                    is = jarFile.getInputStream(entry);
-                    fos = new FileOutputStream(file);
-                    while (is.available() > 0) {
-                        fos.write(is.read());
-                    }
-                    fos.close();
-                    is.close();
-                } catch (IOException e) {
-                    LOG.error("Unable to extract file " + file.getAbsolutePath());
-                } finally {
-                    if (fos != null) {
-                        fos.close();
-                    }
-                    if (is != null) {
-                        is.close();
+            } else {
+                files.add(resource);
+            }
+        }
+        int threads = Math.max(1, Math.min(files.size(), Runtime.getRuntime().availableProcessors()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Boolean>> results = new ArrayList<Future<Boolean>>(files.size());
+            for (final ResourceIndex.Resource resource : files) {
+                final File file = new File(extractFolder, resource.getName());
+                results.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() {
+                        try {
+                            return extract(resource, file);
+                        } catch (IOException e) {
+                            LOG.error("Unable to extract file " + file.getAbsolutePath(), e);
+                            return false;
+                        }
                     }
+                }));
+            }
+            int extracted = 0;
+            for (Future<Boolean> result : results) {
+                if (result.get()) {
+                    extracted++;
                 }
             }
+            LOG.debug("Extracted {} of {} files; the others were already up to date or failed.", extracted, files.size());
+            return extracted;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while extracting files.");
+        } catch (ExecutionException e) {
+            throw new IOException("Unable to extract files.", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Extracts a {@code resource} into {@code file}, unless the file already has the resource's size and CRC.
+     *
+     * @return {@code true} if the file was written, {@code false} if it was already up to date
+     */
+    private static boolean extract(ResourceIndex.Resource resource, File file) throws IOException {
+        if (isUpToDate(resource, file)) {
+            return false;
+        }
+        File parent = file.getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs() && !parent.isDirectory()) {
+            throw new IOException("Unable to create folder " + parent.getAbsolutePath());
+        }
+        ReadableByteChannel in = null;
+        FileChannel out = null;
+        try {
+            in = Channels.newChannel(resource.open());
+            out = new FileOutputStream(file).getChannel();
+            long size = resource.getSize();
+            long position = 0;
+            long transferred;
+            do {
+                transferred = out.transferFrom(in, position, size >= 0 ? size - position : COPY_CHUNK_SIZE);
+                position += transferred;
+            } while (transferred > 0 && (size < 0 || position < size));
+            if (size >= 0 && position != size) {
+                throw new IOException("Expected " + size + " bytes but extracted " + position + " bytes for " + file.getAbsolutePath());
+            }
+        } finally {
+            if (out != null) {
+                out.close();
+            }
+            if (in != null) {
+                in.close();
+            }
         }
+        return true;
+    }
+
+    private static boolean isUpToDate(ResourceIndex.Resource resource, File file) throws IOException {
+        if (!file.isFile() || resource.getSize() < 0 || file.length() != resource.getSize()) {
+            return false;
+        }
+        long crc = resource.getCrc();
+        return crc >= 0 && ResourceIndex.crc(file) == crc;
     }
 
     /**
-     * Reads the embedded test definition files and provides a list of {@link JSONObject}.
+     * Reads the embedded test definition files and provides a list of {@link JSONObject}, ordered by the definition files' names. The
+     * files are parsed concurrently and only once.
      *
      * @return the list of test definitions as JSON objects
      */
-    public List<JSONObject> getTestDefinitions() {
-        if (testDefinitions.size() == 0) {
-            Enumeration<JarEntry> entries = jarFile.entries();
-            while (entries.hasMoreElements()) {
-                JarEntry entry = entries.nextElement();
-                String entryName = entry.getName();
-                if (entryName.startsWith(TEST_DEFINITIONS_PATH) && entryName.length() > TEST_DEFINITIONS_PATH.length()) {
-                    StringBuilder sb = new StringBuilder();
-                    try {
-                        InputStream testDefinitionStream = jarFile.getInputStream(entry);
-                        BufferedReader reader = new BufferedReader(new InputStreamReader(testDefinitionStream, "UTF-8"));
-                        String line;
+    public synchronized List<JSONObject> getTestDefinitions() {
+        if (testDefinitions == null) {
+            testDefinitions = readTestDefinitions(resources);
+        }
+        return testDefinitions;
+    }
 
-                        while ((line = reader.readLine()) != null) {
-                            sb.append(line);
+    /**
+     * Parses the test definition files from a resource index, concurrently.
+     *
+     * @param resources the resource index
+     * @return the test definitions, ordered by their files' names
+     */
+    static List<JSONObject> readTestDefinitions(ResourceIndex resources) {
+        List<ResourceIndex.Resource> files = new ArrayList<ResourceIndex.Resource>();
+        for (ResourceIndex.Resource resource : resources.list(TEST_DEFINITIONS_PATH)) {
+            if (!resource.isDirectory()) {
+                files.add(resource);
+            }
+        }
+        int threads = Math.max(1, Math.min(files.size(), Runtime.getRuntime().availableProcessors()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<JSONObject>> results = new ArrayList<Future<JSONObject>>(files.size());
+            for (final ResourceIndex.Resource resource : files) {
+                results.add(executor.submit(new Callable<JSONObject>() {
+                    @Override
+                    public JSONObject call() {
+                        try {
+                            return parse(resource);
+                        } catch (IOException e) {
+                            LOG.error("Skipping entry " + resource.getName(), e);
+                            return null;
                         }
-                        testDefinitions.add(new JSONObject(sb.toString()));
-                        reader.close();
-                    } catch (IOException e) {
-                        LOG.error("Skipping entry " + entryName, e);
                     }
+                }));
+            }
+            List<JSONObject> definitions = new ArrayList<JSONObject>(files.size());
+            for (Future<JSONObject> result : results) {
+                JSONObject definition = result.get();
+                if (definition != null) {
+                    definitions.add(definition);
                 }
             }
+            return Collections.unmodifiableList(definitions);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while reading the test definitions.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException("Unable to read the test definitions.", cause);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Provides the test plan of the embedded test definitions. The plan compiled at build time is used when available; otherwise the
+     * plan is compiled from the JSON test definitions.
+     *
+     * @return the test plan
+     */
+    public synchronized TestPlan getTestPlan() {
+        if (testPlan == null) {
+            try {
+                testPlan = TestPlan.load();
+            } catch (IOException e) {
+                LOG.warn("Unable to read the compiled test plan; falling back to the JSON test definitions.", e);
+            }
+            if (testPlan == null) {
+                testPlan = TestPlan.compile(getTestDefinitions());
+            }
+        }
+        return testPlan;
+    }
+
+    private static JSONObject parse(ResourceIndex.Resource resource) throws IOException {
+        Reader reader = new BufferedReader(new InputStreamReader(resource.open(), "UTF-8"));
+        try {
+            return new JSONObject(new JSONTokener(reader));
+        } finally {
+            reader.close();
         }
-        return testDefinitions;
     }
 
     public static void main(String[] args) {
@@ -200,6 +577,47 @@ public enum TCK {
                 .withArgName("USER").create());
         options.addOption(OptionBuilder.withLongOpt(CLI_AUTH_PASS).withDescription(CLI_AUTH_PASS_DESCRIPTION).hasOptionalArg()
                 .withArgName("PASS").create());
+        options.addOption(OptionBuilder.withLongOpt(CLI_THREADS).withDescription(CLI_THREADS_DESCRIPTION).hasArg().withArgName("N")
+                .create());
+        options.addOption(OptionBuilder.withLongOpt(CLI_PREFETCH).withDescription(CLI_PREFETCH_DESCRIPTION).hasArg().withArgName("N")
+                .create());
+        options.addOption(OptionBuilder.withLongOpt(CLI_SUITE).withDescription(CLI_SUITE_DESCRIPTION).hasArg().withArgName("PATTERNS")
+                .create());
+        options.addOption(OptionBuilder.withLongOpt(CLI_GROUP).withDescription(CLI_GROUP_DESCRIPTION).hasArg().withArgName("PATTERNS")
+                .create());
+        options.addOption(OptionBuilder.withLongOpt(CLI_CASE).withDescription(CLI_CASE_DESCRIPTION).hasArg().withArgName("PATTERNS")
+                .create());
+        options.addOption(OptionBuilder.withLongOpt(CLI_RESULTS).withDescription(CLI_RESULTS_DESCRIPTION).hasArg().withArgName("FILE")
+                .create());
+        options.addOption(OptionBuilder.withLongOpt(CLI_RERUN_FAILED).withDescription(CLI_RERUN_FAILED_DESCRIPTION).create());
+        options.addOption(OptionBuilder.withLongOpt(CLI_CHANGED_ONLY).withDescription(CLI_CHANGED_ONLY_DESCRIPTION).create());
+        options.addOption(OptionBuilder.withLongOpt(CLI_SHARD).withDescription(CLI_SHARD_DESCRIPTION).hasArg().withArgName("I/N")
+                .create());
+        options.addOption(OptionBuilder.withLongOpt(CLI_MERGE).withDescription(CLI_MERGE_DESCRIPTION).hasArgs().withArgName("FILES")
+                .create());
+        options.addOption(OptionBuilder.withLongOpt(CLI_COMPRESSION).withDescription(CLI_COMPRESSION_DESCRIPTION).create());
+        options.addOption(OptionBuilder.withLongOpt(CLI_HTTP_CACHE).withDescription(CLI_HTTP_CACHE_DESCRIPTION).hasArg()
+                .withArgName("DIR").create());
+        options.addOption(OptionBuilder.withLongOpt(CLI_HTTP_CACHE_SIZE).withDescription(CLI_HTTP_CACHE_SIZE_DESCRIPTION).hasArg()
+                .withArgName("BYTES").create());
+        options.addOption(OptionBuilder.withLongOpt(CLI_RECORD).withDescription(CLI_RECORD_DESCRIPTION).hasArg().withArgName("FILE")
+                .create());
+        options.addOption(OptionBuilder.withLongOpt(CLI_REPLAY).withDescription(CLI_REPLAY_DESCRIPTION).hasArg().withArgName("FILE")
+                .create());
+        options.addOption(OptionBuilder.withLongOpt(CLI_SERVE).withDescription(CLI_SERVE_DESCRIPTION).hasOptionalArg()
+                .withArgName("PORT").create());
+        options.addOption(OptionBuilder.withLongOpt(CLI_REFERENCE).withDescription(CLI_REFERENCE_DESCRIPTION).create());
+        options.addOption(OptionBuilder.withLongOpt(CLI_BENCH).withDescription(CLI_BENCH_DESCRIPTION).create());
+        options.addOption(OptionBuilder.withLongOpt(CLI_WARMUP).withDescription(CLI_WARMUP_DESCRIPTION).hasArg().withArgName("N")
+                .create());
+        options.addOption(OptionBuilder.withLongOpt(CLI_REQUESTS).withDescription(CLI_REQUESTS_DESCRIPTION).hasArg().withArgName("N")
+                .create());
+        options.addOption(OptionBuilder.withLongOpt(CLI_CONCURRENCY).withDescription(CLI_CONCURRENCY_DESCRIPTION).hasArg()
+                .withArgName("N").create());
+        options.addOption(OptionBuilder.withLongOpt(CLI_BENCH_REPORT).withDescription(CLI_BENCH_REPORT_DESCRIPTION).hasArg()
+                .withArgName("FILE").create());
+        options.addOption(OptionBuilder.withLongOpt(CLI_METRICS).withDescription(CLI_METRICS_DESCRIPTION).hasArg().withArgName("DIR")
+                .create());
         try {
             CommandLine line = parser.parse(options, args);
             if (!line.iterator().hasNext()) {
@@ -213,6 +631,19 @@ public enum TCK {
                 }
                 INSTANCE.extract(extractDir);
                 LOG.info("Extracted testing resources in folder {}.", extractDir + File.separator + TESTFILES);
+            } else if (line.hasOption(CLI_SERVE)) {
+                int port = line.getOptionValue(CLI_SERVE) == null ? DEFAULT_SERVE_PORT : getInt(line, CLI_SERVE, 0, options);
+                // the server's dispatcher thread keeps the JVM running until it's stopped
+                INSTANCE.startReferenceServer(new InetSocketAddress(port));
+            } else if (line.hasOption(CLI_MERGE)) {
+                String[] files = line.getOptionValues(CLI_MERGE);
+                if (files == null || files.length == 0) {
+                    LOG.error("Missing value for --" + CLI_MERGE + " command line option.");
+                    printUsage(options);
+                    die();
+                }
+                INSTANCE.merge(files, new File(line.hasOption(CLI_RESULTS) ? line.getOptionValue(CLI_RESULTS) :
+                        Constants.DEFAULT_RESULTS_FILE));
             } else {
                 if (line.hasOption(CLI_URL)) {
                     String url = line.getOptionValue(CLI_URL);
@@ -239,7 +670,95 @@ public enum TCK {
                     System.setProperty(Constants.SYS_PROP_USER, user);
                     System.setProperty(Constants.SYS_PROP_PASS, pass);
                 }
-                INSTANCE.run();
+                if (line.hasOption(CLI_THREADS)) {
+                    System.setProperty(Constants.SYS_PROP_THREADS, String.valueOf(getInt(line, CLI_THREADS, 1, options)));
+                }
+                if (line.hasOption(CLI_PREFETCH)) {
+                    System.setProperty(Constants.SYS_PROP_PREFETCH, String.valueOf(getInt(line, CLI_PREFETCH, 0, options)));
+                }
+                if (line.hasOption(CLI_METRICS)) {
+                    System.setProperty(Constants.SYS_PROP_METRICS_DIR, line.getOptionValue(CLI_METRICS));
+                }
+                if (line.hasOption(CLI_SUITE)) {
+                    System.setProperty(Constants.SYS_PROP_SUITE, line.getOptionValue(CLI_SUITE));
+                }
+                if (line.hasOption(CLI_GROUP)) {
+                    System.setProperty(Constants.SYS_PROP_GROUP, line.getOptionValue(CLI_GROUP));
+                }
+                if (line.hasOption(CLI_CASE)) {
+                    System.setProperty(Constants.SYS_PROP_CASE, line.getOptionValue(CLI_CASE));
+                }
+                Shard shard = null;
+                if (line.hasOption(CLI_SHARD)) {
+                    try {
+                        shard = Shard.parse(line.getOptionValue(CLI_SHARD));
+                    } catch (IllegalArgumentException e) {
+                        LOG.error("Invalid value for --" + CLI_SHARD + " command line option: " + e.getMessage());
+                        printUsage(options);
+                        die();
+                    }
+                    System.setProperty(Constants.SYS_PROP_SHARD, shard.toString());
+                }
+                if (line.hasOption(CLI_COMPRESSION)) {
+                    System.setProperty(Constants.SYS_PROP_COMPRESSION, "true");
+                }
+                if (line.hasOption(CLI_HTTP_CACHE) && !line.hasOption(CLI_BENCH)) {
+                    // revalidated responses would make the benchmark measure the cache instead of the engine
+                    System.setProperty(Constants.SYS_PROP_HTTP_CACHE_DIR, line.getOptionValue(CLI_HTTP_CACHE));
+                    if (line.hasOption(CLI_HTTP_CACHE_SIZE)) {
+                        long cacheSize = getLong(line, CLI_HTTP_CACHE_SIZE, 1, Long.MAX_VALUE, options);
+                        System.setProperty(Constants.SYS_PROP_HTTP_CACHE_SIZE, String.valueOf(cacheSize));
+                    }
+                }
+                if (line.hasOption(CLI_RECORD) || line.hasOption(CLI_REPLAY)) {
+                    if (line.hasOption(CLI_BENCH) || (line.hasOption(CLI_RECORD) && line.hasOption(CLI_REPLAY))) {
+                        LOG.error("The --" + CLI_RECORD + " and --" + CLI_REPLAY + " command line options cannot be used together or " +
+                                "with --" + CLI_BENCH + ".");
+                        printUsage(options);
+                        die();
+                    }
+                    if (line.hasOption(CLI_RECORD)) {
+                        System.setProperty(Constants.SYS_PROP_RECORD_FILE, line.getOptionValue(CLI_RECORD));
+                    } else {
+                        System.setProperty(Constants.SYS_PROP_REPLAY_FILE, line.getOptionValue(CLI_REPLAY));
+                        if (!line.hasOption(CLI_URL) && !line.hasOption(CLI_REFERENCE)) {
+                            // the responses are looked up relative to the server URL, so it only has to be well-formed
+                            System.setProperty(Constants.SYS_PROP_SERVER_URL, REPLAY_SERVER_URL);
+                        }
+                    }
+                }
+                // the results are only persisted when an option needs them, so that a plain run doesn't touch the working folder
+                String resultsFile = line.getOptionValue(CLI_RESULTS);
+                if (resultsFile == null && shard != null) {
+                    // shards running in the same folder must not overwrite each other's results
+                    resultsFile = StringUtils.removeEnd(Constants.DEFAULT_RESULTS_FILE, ".json") + "-" + shard.getIndex() + "-of-" +
+                            shard.getCount() + ".json";
+                }
+                if (resultsFile == null && (line.hasOption(CLI_RERUN_FAILED) || line.hasOption(CLI_CHANGED_ONLY))) {
+                    resultsFile = Constants.DEFAULT_RESULTS_FILE;
+                }
+                if (resultsFile != null) {
+                    System.setProperty(Constants.SYS_PROP_RESULTS_FILE, resultsFile);
+                }
+                System.setProperty(Constants.SYS_PROP_RERUN_FAILED, String.valueOf(line.hasOption(CLI_RERUN_FAILED)));
+                System.setProperty(Constants.SYS_PROP_CHANGED_ONLY, String.valueOf(line.hasOption(CLI_CHANGED_ONLY)));
+                ReferenceServer referenceServer = null;
+                if (line.hasOption(CLI_REFERENCE)) {
+                    if (line.hasOption(CLI_URL)) {
+                        LOG.error("The --" + CLI_URL + " and --" + CLI_REFERENCE + " command line options cannot be used together.");
+                        printUsage(options);
+                        die();
+                    }
+                    referenceServer = INSTANCE.startReferenceServer(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0));
+                    System.setProperty(Constants.SYS_PROP_SERVER_URL, "http://127.0.0.1:" + referenceServer.getPort());
+                }
+                try {
+                    runOrBench(line, options);
+                } finally {
+                    if (referenceServer != null) {
+                        referenceServer.stop();
+                    }
+                }
             }
 
         } catch (ParseException e) {
@@ -251,6 +770,43 @@ public enum TCK {
         }
     }
 
+    private static void runOrBench(CommandLine line, Options options) throws IOException {
+        if (line.hasOption(CLI_BENCH)) {
+            int warmup = line.hasOption(CLI_WARMUP) ? getInt(line, CLI_WARMUP, 0, options) : DEFAULT_WARMUP_REQUESTS;
+            int requests = line.hasOption(CLI_REQUESTS) ? getInt(line, CLI_REQUESTS, 1, options) : DEFAULT_REQUESTS;
+            int concurrency = line.hasOption(CLI_CONCURRENCY) ? getInt(line, CLI_CONCURRENCY, 1, options) : 1;
+            if (concurrency > Integer.getInteger(Constants.SYS_PROP_MAX_CONNECTIONS_PER_HOST,
+                    Client.DEFAULT_MAX_CONNECTIONS_PER_HOST)) {
+                // allow all the concurrent requests to get a connection
+                System.setProperty(Constants.SYS_PROP_MAX_CONNECTIONS_PER_HOST, String.valueOf(concurrency));
+            }
+            INSTANCE.bench(warmup, requests, concurrency, line.getOptionValue(CLI_BENCH_REPORT));
+        } else {
+            INSTANCE.run();
+        }
+    }
+
+    private static int getInt(CommandLine line, String option, int min, Options options) {
+        return (int) getLong(line, option, min, Integer.MAX_VALUE, options);
+    }
+
+    private static long getLong(CommandLine line, String option, long min, long max, Options options) {
+        String value = line.getOptionValue(option);
+        try {
+            long number = Long.parseLong(value);
+            if (number >= min && number <= max) {
+                return number;
+            }
+        } catch (NumberFormatException e) {
+            // handled below
+        }
+        LOG.error("Invalid value for --" + option + " command line option: " + value + ". Expected an integer greater than or equal " +
+                "to " + min + ".");
+        printUsage(options);
+        die();
+        return -1;
+    }
+
     private static void printUsage(Options options) {
         HelpFormatter formatter = new HelpFormatter();
         formatter.printHelp("java -jar io.sightly.tck-<version>-standalone.jar", options, true);
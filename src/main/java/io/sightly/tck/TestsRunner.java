@@ -15,12 +15,16 @@
  ******************************************************************************/
 package io.sightly.tck;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.List;
 
-import org.json.JSONObject;
+import org.apache.commons.lang.StringUtils;
 import org.junit.runner.RunWith;
 import org.junit.runners.AllTests;
 
+import io.sightly.tck.results.ResultsStore;
+import io.sightly.tck.tests.TCKTestSuite;
 import io.sightly.tck.tests.TestBuilder;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
@@ -32,18 +36,49 @@ import junit.framework.TestSuite;
 public class TestsRunner {
 
     /**
-     * Creates the test suite.
+     * Creates the test suite. If the {@link Constants#SYS_PROP_THREADS} system property is set to a value greater than {@code 1} the
+     * tests will be run concurrently. Unless {@link Constants#SYS_PROP_PREFETCH} is set to {@code 0}, all the URLs used by the tests
+     * are fetched concurrently before the tests are run. Unless {@link Constants#SYS_PROP_BATCH} is set to {@code false}, the selectors
+     * of all the tests using a URL are evaluated in a single traversal of the page. If {@link Constants#SYS_PROP_METRICS_DIR} is set,
+     * the run's metrics are exported to that folder. The {@link Constants#SYS_PROP_SUITE}, {@link Constants#SYS_PROP_GROUP} and
+     * {@link Constants#SYS_PROP_CASE} patterns restrict the suite to the selected cases, which can be further restricted to the cases
+     * that failed or whose URL's response changed since the run saved in the {@link Constants#SYS_PROP_RESULTS_FILE}.
      *
      * @return a test suite
      */
     public static TestSuite suite() {
-        List<JSONObject> testDefinitions = TCK.INSTANCE.getTestDefinitions();
-        TestSuite suite = new TestSuite();
-        for (JSONObject testDefinition : testDefinitions) {
-            List<TestCase> testCases = TestBuilder.getTests(testDefinition);
-            for (TestCase tc : testCases) {
-                suite.addTest(tc);
+        int threads = Math.max(1, Integer.getInteger(Constants.SYS_PROP_THREADS, 1));
+        int prefetch = Math.max(0, Integer.getInteger(Constants.SYS_PROP_PREFETCH, 4));
+        boolean batch = Boolean.parseBoolean(System.getProperty(Constants.SYS_PROP_BATCH, "true"));
+        TCKTestSuite suite = new TCKTestSuite(threads, prefetch, batch);
+        String metricsDir = System.getProperty(Constants.SYS_PROP_METRICS_DIR);
+        if (StringUtils.isNotEmpty(metricsDir)) {
+            suite.setMetricsFolder(new File(metricsDir));
+        }
+        boolean rerunFailed = Boolean.getBoolean(Constants.SYS_PROP_RERUN_FAILED);
+        boolean changedOnly = Boolean.getBoolean(Constants.SYS_PROP_CHANGED_ONLY);
+        String resultsFile = System.getProperty(Constants.SYS_PROP_RESULTS_FILE);
+        if (StringUtils.isEmpty(resultsFile) && (rerunFailed || changedOnly)) {
+            resultsFile = Constants.DEFAULT_RESULTS_FILE;
+        }
+        ResultsStore results = null;
+        if (StringUtils.isNotEmpty(resultsFile)) {
+            try {
+                results = ResultsStore.load(new File(resultsFile));
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to load the results file " + resultsFile + ".", e);
             }
+            suite.setResultsStore(results);
+        }
+        List<TestCase> tests = TestBuilder.getTests(TCK.INSTANCE.getTestPlan());
+        if (rerunFailed) {
+            tests = TestBuilder.selectFailed(tests, results);
+        }
+        if (changedOnly) {
+            tests = TestBuilder.selectChanged(tests, results, Math.max(1, prefetch));
+        }
+        for (TestCase tc : tests) {
+            suite.addTest(tc);
         }
         return suite;
     }
@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright 2014 Adobe Systems Incorporated
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package io.sightly.tck.assertions;
+
+import io.sightly.tck.html.HTMLExtractor;
+import io.sightly.tck.plan.Method;
+import io.sightly.tck.plan.PlannedCase;
+import junit.framework.AssertionFailedError;
+
+/**
+ * An {@code Assertion} is a test case compiled into the check of its {@link Method}, with all the check's parameters resolved when the
+ * test plan is built. Evaluating an assertion which holds doesn't build any message; the failure messages are only formatted when a
+ * check fails.
+ */
+public abstract class Assertion {
+
+    protected final String selector;
+    private final String expectedMarkup;
+
+    Assertion(PlannedCase testCase) {
+        this.selector = testCase.getSelector();
+        this.expectedMarkup = testCase.getExpectedMarkup();
+    }
+
+    /**
+     * Compiles a test case into the assertion of its method.
+     *
+     * @param testCase the test case
+     * @return the assertion
+     * @throws IllegalArgumentException if the test case's method is not supported
+     */
+    public static Assertion compile(PlannedCase testCase) {
+        switch (testCase.getMethod()) {
+            case INNER_HTML_EQUALS:
+                return new InnerHtmlEquals(testCase);
+            case CONTAINS:
+                return new Contains(testCase);
+            case EXISTS:
+                return new Exists(testCase);
+            case HAS_ATTRIBUTE:
+                return new HasAttribute(testCase);
+            case HAS_ATTRIBUTE_VALUE:
+                return new HasAttributeValue(testCase);
+            case HAS_CHILDREN:
+                return new HasChildren(testCase);
+            case HAS_CLOSING_TAG:
+                return new HasClosingTag(testCase);
+            default:
+                throw new IllegalArgumentException("Unknown test method: " + testCase.getMethod());
+        }
+    }
+
+    /**
+     * Evaluates this assertion on the document loaded by the {@link HTMLExtractor} for the {@code url}.
+     *
+     * @param url the URL identifying the document
+     * @throws AssertionFailedError if the assertion doesn't hold
+     */
+    public abstract void evaluate(String url);
+
+    /**
+     * Checks that the {@link #selector} matches an element of the document loaded for the {@code url}.
+     */
+    void checkExists(String url) {
+        if (!HTMLExtractor.exists(url, selector)) {
+            fail("Expected to find an element matching selector '%s'.", selector);
+        }
+    }
+
+    /**
+     * Checks that an element matched by the {@link #selector} has the attribute or, if not {@code positive}, that none of them has it.
+     */
+    void checkAttribute(String url, String attributeName, boolean positive) {
+        boolean hasAttribute = HTMLExtractor.hasAttribute(url, selector, attributeName);
+        if (positive && !hasAttribute) {
+            fail("Cannot find attribute '%s' on element matching selector '%s'.", attributeName, selector);
+        } else if (!positive && hasAttribute) {
+            fail("Did not expect to find attribute '%s' on element matching selector '%s'.", attributeName, selector);
+        }
+    }
+
+    /**
+     * Fails with a message built from the {@code format} and its {@code arguments}, followed by a pointer to the expected markup.
+     */
+    void fail(String format, Object... arguments) {
+        throw new AssertionFailedError(String.format(format, arguments) + " Please check the expected markup from " + expectedMarkup +
+                ".");
+    }
+}
@@ -0,0 +1,41 @@
+/*******************************************************************************
+ * Copyright 2014 Adobe Systems Incorporated
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package io.sightly.tck.assertions;
+
+import io.sightly.tck.html.HTMLExtractor;
+import io.sightly.tck.plan.PlannedCase;
+
+/**
+ * Asserts that the selector matches an element or, for a negative case, that it doesn't match any.
+ */
+final class Exists extends Assertion {
+
+    private final boolean positive;
+
+    Exists(PlannedCase testCase) {
+        super(testCase);
+        this.positive = testCase.isPositive();
+    }
+
+    @Override
+    public void evaluate(String url) {
+        if (positive) {
+            checkExists(url);
+        } else if (HTMLExtractor.exists(url, selector)) {
+            fail("Did not expect to find an element matching selector '%s'.", selector);
+        }
+    }
+}
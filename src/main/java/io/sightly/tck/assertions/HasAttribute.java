@@ -0,0 +1,39 @@
+/*******************************************************************************
+ * Copyright 2014 Adobe Systems Incorporated
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package io.sightly.tck.assertions;
+
+import io.sightly.tck.plan.PlannedCase;
+
+/**
+ * Asserts that an element matched by the selector has the attribute or, for a negative case, that none of them has it.
+ */
+final class HasAttribute extends Assertion {
+
+    private final String attributeName;
+    private final boolean positive;
+
+    HasAttribute(PlannedCase testCase) {
+        super(testCase);
+        this.attributeName = testCase.getAttribute();
+        this.positive = testCase.isPositive();
+    }
+
+    @Override
+    public void evaluate(String url) {
+        checkExists(url);
+        checkAttribute(url, attributeName, positive);
+    }
+}
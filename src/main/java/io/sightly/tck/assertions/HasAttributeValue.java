@@ -0,0 +1,51 @@
+/*******************************************************************************
+ * Copyright 2014 Adobe Systems Incorporated
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package io.sightly.tck.assertions;
+
+import io.sightly.tck.html.HTMLExtractor;
+import io.sightly.tck.plan.PlannedCase;
+
+/**
+ * Asserts that an element matched by the selector has the attribute with the expected value or, for a negative case, that none of them
+ * has the attribute.
+ */
+final class HasAttributeValue extends Assertion {
+
+    private final String attributeName;
+    private final String attributeValue;
+    private final boolean positive;
+
+    HasAttributeValue(PlannedCase testCase) {
+        super(testCase);
+        this.attributeName = testCase.getAttribute();
+        this.attributeValue = testCase.getValue();
+        this.positive = testCase.isPositive();
+    }
+
+    @Override
+    public void evaluate(String url) {
+        checkExists(url);
+        checkAttribute(url, attributeName, positive);
+        boolean hasValue = HTMLExtractor.hasAttributeValue(url, selector, attributeName, attributeValue);
+        if (positive && !hasValue) {
+            fail("Cannot find attribute '%s' on element matching selector '%s' with value '%s'.", attributeName, selector,
+                    attributeValue);
+        } else if (!positive && hasValue) {
+            fail("Did not expect to find attribute '%s' on element matching selector '%s' with value '%s'.", attributeName, selector,
+                    attributeValue);
+        }
+    }
+}
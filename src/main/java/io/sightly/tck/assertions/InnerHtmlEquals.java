@@ -0,0 +1,41 @@
+/*******************************************************************************
+ * Copyright 2014 Adobe Systems Incorporated
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package io.sightly.tck.assertions;
+
+import io.sightly.tck.html.HTMLExtractor;
+import io.sightly.tck.plan.PlannedCase;
+
+/**
+ * Asserts that the inner HTML of the elements matched by the selector equals the expected value.
+ */
+final class InnerHtmlEquals extends Assertion {
+
+    private final String expectedValue;
+
+    InnerHtmlEquals(PlannedCase testCase) {
+        super(testCase);
+        this.expectedValue = testCase.getValue();
+    }
+
+    @Override
+    public void evaluate(String url) {
+        checkExists(url);
+        String value = HTMLExtractor.innerHTML(url, selector);
+        if (!expectedValue.equals(value)) {
+            fail("Expected value '%s' for selector '%s'. Instead we got '%s'.", expectedValue, selector, value);
+        }
+    }
+}
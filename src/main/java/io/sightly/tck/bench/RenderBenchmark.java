@@ -0,0 +1,162 @@
+/*******************************************************************************
+ * Copyright 2014 Adobe Systems Incorporated
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package io.sightly.tck.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import io.sightly.tck.http.Client;
+import io.sightly.tck.http.ClientException;
+import io.sightly.tck.metrics.Metrics;
+
+/**
+ * Measures the render latency of the TCK scripts. For each script a number of warm-up requests are issued first, whose latencies are
+ * discarded, followed by the measured requests; the requests for a script are issued by a fixed number of concurrent workers and the
+ * scripts are benchmarked one after the other. The response body sizes of each script's measured requests are taken from the {@link
+ * Metrics}.
+ */
+public class RenderBenchmark {
+
+    private final Client client;
+    private final int warmupRequests;
+    private final int requests;
+    private final int concurrency;
+
+    /**
+     * Creates a benchmark.
+     *
+     * @param client         the client used for issuing the requests
+     * @param warmupRequests the number of warm-up requests per script
+     * @param requests       the number of measured requests per script
+     * @param concurrency    the number of concurrent requests
+     */
+    public RenderBenchmark(Client client, int warmupRequests, int requests, int concurrency) {
+        if (warmupRequests < 0 || requests < 1 || concurrency < 1) {
+            throw new IllegalArgumentException("The number of warm-up requests cannot be negative; the number of measured requests and " +
+                    "the concurrency have to be positive integers.");
+        }
+        this.client = client;
+        this.warmupRequests = warmupRequests;
+        this.requests = requests;
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Benchmarks the scripts.
+     *
+     * @param scripts the scripts' URLs, mapped to the status code the server is expected to respond with
+     * @return the statistics of each script, in the iteration order of {@code scripts}
+     * @throws InterruptedException if the current thread is interrupted while waiting for the requests to complete
+     */
+    public List<ScriptStats> run(Map<String, Integer> scripts) throws InterruptedException {
+        List<ScriptStats> stats = new ArrayList<ScriptStats>(scripts.size());
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        try {
+            for (Map.Entry<String, Integer> script : scripts.entrySet()) {
+                String url = script.getKey();
+                int expectedStatusCode = script.getValue();
+                issue(executor, url, expectedStatusCode, new long[warmupRequests]);
+                long[] latencies = new long[requests];
+                long wireBytes = Metrics.getWireBytes();
+                long decodedBytes = Metrics.getDecodedBytes();
+                long start = System.nanoTime();
+                int errors = issue(executor, url, expectedStatusCode, latencies);
+                long elapsed = System.nanoTime() - start;
+                wireBytes = Metrics.getWireBytes() - wireBytes;
+                decodedBytes = Metrics.getDecodedBytes() - decodedBytes;
+                long[] successful = new long[requests - errors];
+                int i = 0;
+                for (long latency : latencies) {
+                    if (latency >= 0) {
+                        successful[i++] = latency;
+                    }
+                }
+                stats.add(new ScriptStats(url, successful, errors, elapsed, wireBytes, decodedBytes));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return stats;
+    }
+
+    /**
+     * Returns the statistics of a benchmark run as JSON.
+     *
+     * @param stats the statistics
+     * @return the JSON report
+     */
+    public JSONObject toJSON(List<ScriptStats> stats) {
+        JSONObject json = new JSONObject();
+        json.put("warmupRequests", warmupRequests);
+        json.put("requests", requests);
+        json.put("concurrency", concurrency);
+        JSONArray scripts = new JSONArray();
+        for (ScriptStats script : stats) {
+            scripts.put(script.toJSON());
+        }
+        json.put("scripts", scripts);
+        return json;
+    }
+
+    /**
+     * Issues {@code latencies.length} requests, storing their latencies; failed requests are marked with a {@code -1} latency.
+     *
+     * @return the number of failed requests
+     */
+    private int issue(ExecutorService executor, final String url, final int expectedStatusCode, final long[] latencies)
+            throws InterruptedException {
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicInteger errors = new AtomicInteger();
+        List<Callable<Object>> workers = new ArrayList<Callable<Object>>(concurrency);
+        for (int i = 0; i < Math.min(concurrency, latencies.length); i++) {
+            workers.add(new Callable<Object>() {
+                @Override
+                public Object call() {
+                    int request;
+                    while ((request = next.getAndIncrement()) < latencies.length) {
+                        long start = System.nanoTime();
+                        try {
+                            client.getStringContent(url, expectedStatusCode);
+                            latencies[request] = System.nanoTime() - start;
+                        } catch (ClientException e) {
+                            latencies[request] = -1;
+                            errors.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }
+            });
+        }
+        for (Future<Object> future : executor.invokeAll(workers)) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Unexpected error while benchmarking " + url + ".", e.getCause());
+            }
+        }
+        return errors.get();
+    }
+}
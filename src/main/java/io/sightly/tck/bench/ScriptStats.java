@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * Copyright 2014 Adobe Systems Incorporated
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package io.sightly.tck.bench;
+
+import java.util.Arrays;
+
+import org.json.JSONObject;
+
+/**
+ * Latency and size statistics of the measured requests issued for a single script by the {@link RenderBenchmark}.
+ */
+public final class ScriptStats {
+
+    private static final double NANOS_PER_MILLISECOND = 1000000d;
+    private static final double NANOS_PER_SECOND = 1000000000d;
+
+    private final String url;
+    private final int requests;
+    private final int errors;
+    private final long[] latencies;
+    private final long elapsed;
+    private final long wireBytes;
+    private final long decodedBytes;
+
+    /**
+     * Creates the statistics of a script.
+     *
+     * @param url          the script's URL
+     * @param latencies    the latencies of the successful requests, in nanoseconds
+     * @param errors       the number of failed requests
+     * @param elapsed      the time it took to issue all the requests, in nanoseconds
+     * @param wireBytes    the number of response body bytes received
+     * @param decodedBytes the number of response body bytes after decoding their content encoding
+     */
+    ScriptStats(String url, long[] latencies, int errors, long elapsed, long wireBytes, long decodedBytes) {
+        this.url = url;
+        this.latencies = latencies.clone();
+        Arrays.sort(this.latencies);
+        this.errors = errors;
+        this.requests = latencies.length + errors;
+        this.elapsed = elapsed;
+        this.wireBytes = wireBytes;
+        this.decodedBytes = decodedBytes;
+    }
+
+    /**
+     * Returns the script's URL.
+     *
+     * @return the URL
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * Returns the number of measured requests, including the failed ones.
+     *
+     * @return the number of requests
+     */
+    public int getRequests() {
+        return requests;
+    }
+
+    /**
+     * Returns the number of failed requests.
+     *
+     * @return the number of errors
+     */
+    public int getErrors() {
+        return errors;
+    }
+
+    /**
+     * Returns a percentile of the successful requests' latencies, using the nearest-rank method.
+     *
+     * @param percentile the percentile, between {@code 0} and {@code 100}
+     * @return the latency, in nanoseconds, or {@code 0} if no request succeeded
+     */
+    public long getPercentile(double percentile) {
+        if (latencies.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile / 100 * latencies.length);
+        return latencies[Math.max(0, Math.min(latencies.length, rank) - 1)];
+    }
+
+    /**
+     * Returns the highest latency of the successful requests.
+     *
+     * @return the latency, in nanoseconds, or {@code 0} if no request succeeded
+     */
+    public long getMax() {
+        return latencies.length == 0 ? 0 : latencies[latencies.length - 1];
+    }
+
+    /**
+     * Returns the throughput of the measured requests.
+     *
+     * @return the number of requests per second
+     */
+    public double getRequestsPerSecond() {
+        return elapsed == 0 ? 0 : requests * NANOS_PER_SECOND / elapsed;
+    }
+
+    /**
+     * Returns the number of response body bytes received for the measured requests.
+     *
+     * @return the number of bytes
+     */
+    public long getWireBytes() {
+        return wireBytes;
+    }
+
+    /**
+     * Returns the number of response body bytes of the measured requests, after decoding their content encoding.
+     *
+     * @return the number of bytes
+     */
+    public long getDecodedBytes() {
+        return decodedBytes;
+    }
+
+    /**
+     * Returns these statistics as JSON; latencies are expressed in milliseconds.
+     *
+     * @return the statistics
+     */
+    public JSONObject toJSON() {
+        JSONObject json = new JSONObject();
+        json.put("url", url);
+        json.put("requests", requests);
+        json.put("errors", errors);
+        json.put("p50", getPercentile(50) / NANOS_PER_MILLISECOND);
+        json.put("p90", getPercentile(90) / NANOS_PER_MILLISECOND);
+        json.put("p99", getPercentile(99) / NANOS_PER_MILLISECOND);
+        json.put("max", getMax() / NANOS_PER_MILLISECOND);
+        json.put("rps", getRequestsPerSecond());
+        json.put("wireBytes", wireBytes);
+        json.put("decodedBytes", decodedBytes);
+        return json;
+    }
+}
@@ -0,0 +1,260 @@
+/*******************************************************************************
+ * Copyright 2014 Adobe Systems Incorporated
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package io.sightly.tck.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Thread-safe cache which guarantees that the value for a key is computed at most once while the key is cached. The first caller for a
+ * key runs the loader, while all the concurrent callers for the same key wait for that computation to complete and receive its result.
+ * Failures are cached as well: every caller for a key whose loader failed will receive the same exception.
+ * <p>
+ * The cache can be bounded by a maximum number of entries and by a maximum total weight of its values. When a bound is exceeded the
+ * least recently used entries whose values have already been computed are evicted, although the most recently used entry is always
+ * kept. Entries can be pinned when they are retrieved: pinned entries are never evicted, so their values are never computed twice, and
+ * don't count against the bounds; they are only discarded when they are {@link #remove(Object) removed}.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+public class SingleFlightCache<K, V> {
+
+    private final Map<K, Entry<V>> entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true);
+    private final int maxEntries;
+    private final long maxWeight;
+    private final Weigher<V> weigher;
+    private long weight;
+    private int pinned;
+
+    /**
+     * Creates an unbounded cache.
+     */
+    public SingleFlightCache() {
+        this(0, 0, null);
+    }
+
+    /**
+     * Creates a bounded cache.
+     *
+     * @param maxEntries the maximum number of entries; {@code 0} doesn't limit the number of entries
+     * @param maxWeight  the maximum total weight of the cached values; {@code 0} doesn't limit the weight
+     * @param weigher    the weigher used for computing the weight of the values; required if {@code maxWeight} is positive
+     */
+    public SingleFlightCache(int maxEntries, long maxWeight, Weigher<V> weigher) {
+        if (maxEntries < 0 || maxWeight < 0) {
+            throw new IllegalArgumentException("The cache bounds cannot be negative.");
+        }
+        if (maxWeight > 0 && weigher == null) {
+            throw new IllegalArgumentException("A weigher is required for limiting the cache's weight.");
+        }
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+    }
+
+    /**
+     * Retrieves the value mapped to {@code key}, computing it with the {@code loader} if no other caller has already done so or is
+     * currently doing so.
+     *
+     * @param key    the key
+     * @param loader the loader used for computing the value, if needed
+     * @return the value
+     * @throws RuntimeException any runtime exception or error thrown by the loader; checked exceptions are wrapped in a {@link
+     *                          CacheLoaderException}
+     */
+    public V get(K key, Callable<V> loader) {
+        return get(key, loader, false);
+    }
+
+    /**
+     * Retrieves the value mapped to {@code key}, like {@link #get(Object, Callable)}, optionally pinning its entry so that it's kept
+     * until it's {@link #remove(Object) removed}.
+     *
+     * @param key    the key
+     * @param loader the loader used for computing the value, if needed
+     * @param pin    {@code true} to pin the entry, {@code false} to leave it as it is
+     * @return the value
+     * @throws RuntimeException any runtime exception or error thrown by the loader; checked exceptions are wrapped in a {@link
+     *                          CacheLoaderException}
+     */
+    public V get(K key, Callable<V> loader, boolean pin) {
+        Entry<V> entry;
+        boolean owner = false;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry == null) {
+                entry = new Entry<V>(loader);
+                entries.put(key, entry);
+                owner = true;
+            }
+            if (pin && !entry.pinned) {
+                entry.pinned = true;
+                pinned++;
+                weight -= entry.weight;
+            }
+        }
+        if (owner) {
+            entry.task.run();
+            loaded(key, entry);
+        }
+        return await(key, entry);
+    }
+
+    /**
+     * Retrieves the value mapped to {@code key}, waiting for its computation to complete if another caller is currently computing it.
+     *
+     * @param key the key
+     * @return the value, or {@code null} if the cache doesn't contain an entry for the {@code key}
+     * @throws RuntimeException any runtime exception or error thrown by the loader which computed the value; checked exceptions are
+     *                          wrapped in a {@link CacheLoaderException}
+     */
+    public V getIfPresent(K key) {
+        Entry<V> entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        if (entry == null) {
+            return null;
+        }
+        return await(key, entry);
+    }
+
+    /**
+     * Checks if a value for {@code key} is available or is being computed.
+     *
+     * @param key the key
+     * @return {@code true} if the cache contains an entry for the {@code key}, {@code false} otherwise
+     */
+    public synchronized boolean contains(K key) {
+        return entries.containsKey(key);
+    }
+
+    /**
+     * Removes the entry mapped to {@code key}, if any. Callers already waiting for the entry's value are not affected.
+     *
+     * @param key the key
+     */
+    public synchronized void remove(K key) {
+        Entry<V> entry = entries.remove(key);
+        if (entry != null) {
+            if (entry.pinned) {
+                pinned--;
+            } else {
+                weight -= entry.weight;
+            }
+        }
+    }
+
+    /**
+     * Removes all the entries from this cache.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        weight = 0;
+        pinned = 0;
+    }
+
+    /**
+     * Returns the number of entries from this cache, including the ones still being computed.
+     *
+     * @return the number of entries
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the total weight of the values from this cache which are not pinned. Values still being computed don't have a weight yet.
+     *
+     * @return the total weight, or {@code 0} if this cache doesn't have a {@link Weigher}
+     */
+    public synchronized long weight() {
+        return weight;
+    }
+
+    private void loaded(K key, Entry<V> entry) {
+        long entryWeight = 0;
+        if (weigher != null) {
+            try {
+                entryWeight = weigher.weigh(entry.task.get());
+            } catch (Exception e) {
+                // failed loads don't have a weight
+            }
+        }
+        synchronized (this) {
+            if (entries.get(key) == entry) {
+                entry.weight = entryWeight;
+                if (!entry.pinned) {
+                    weight += entryWeight;
+                }
+            }
+            evict(key);
+        }
+    }
+
+    private void evict(K keep) {
+        Iterator<Map.Entry<K, Entry<V>>> iterator = entries.entrySet().iterator();
+        while ((maxEntries > 0 && entries.size() - pinned > maxEntries || maxWeight > 0 && weight > maxWeight) && iterator.hasNext()) {
+            Map.Entry<K, Entry<V>> eldest = iterator.next();
+            if (eldest.getValue().task.isDone() && !eldest.getValue().pinned && !eldest.getKey().equals(keep)) {
+                weight -= eldest.getValue().weight;
+                iterator.remove();
+            }
+        }
+    }
+
+    private V await(K key, Entry<V> entry) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return entry.task.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    throw new CacheLoaderException("Unable to load value for key " + key + ".", cause);
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static class Entry<V> {
+
+        private final FutureTask<V> task;
+        private long weight;
+        private boolean pinned;
+
+        private Entry(Callable<V> loader) {
+            task = new FutureTask<V>(loader);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+/*******************************************************************************
+ * Copyright 2014 Adobe Systems Incorporated
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package io.sightly.tck.cache;
+
+/**
+ * Computes the weight of the values stored in a bounded {@link SingleFlightCache}, usually an estimate of their size in bytes.
+ *
+ * @param <V> the type of the values
+ */
+public interface Weigher<V> {
+
+    /**
+     * Computes the weight of the {@code value}.
+     *
+     * @param value the value
+     * @return the value's weight; cannot be negative
+     */
+    long weigh(V value);
+
+}
@@ -0,0 +1,167 @@
+/*******************************************************************************
+ * Copyright 2014 Adobe Systems Incorporated
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package io.sightly.tck.html;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.jsoup.nodes.Attribute;
+import org.jsoup.nodes.Comment;
+import org.jsoup.nodes.DataNode;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.select.Elements;
+import org.jsoup.select.Evaluator;
+import org.jsoup.select.NodeTraversor;
+import org.jsoup.select.NodeVisitor;
+
+import io.sightly.tck.cache.SingleFlightCache;
+
+/**
+ * A parsed document, together with the elements matched so far by each selector evaluated on it. Each distinct selector traverses the
+ * document at most once; the matched {@link Elements} are shared and must not be modified.
+ */
+class CachedDocument {
+
+    /**
+     * Rough per-node overhead of a jsoup node, in bytes.
+     */
+    private static final int NODE_SIZE = 64;
+
+    private final Document document;
+    private final long size;
+    private final SingleFlightCache<String, Elements> selections = new SingleFlightCache<String, Elements>();
+
+    CachedDocument(Document document) {
+        this.document = document;
+        this.size = estimateSize(document);
+    }
+
+    Document getDocument() {
+        return document;
+    }
+
+    /**
+     * Returns an estimate of the memory retained by the document, in bytes.
+     *
+     * @return the estimated size
+     */
+    long getSize() {
+        return size;
+    }
+
+    Elements select(final String selector, final SelectorCache selectorCache) {
+        return selections.get(selector, new Callable<Elements>() {
+            @Override
+            public Elements call() {
+                return selectorCache.select(selector, document);
+            }
+        });
+    }
+
+    /**
+     * Evaluates all the {@code selectors} which were not evaluated yet in a single traversal of the document and memoizes their results.
+     * Selectors which cannot be compiled are skipped without affecting the others; evaluating them later, one by one, will report the
+     * error.
+     *
+     * @param selectors     the selectors to evaluate
+     * @param selectorCache the cache providing the compiled selectors
+     */
+    void selectAll(Collection<String> selectors, SelectorCache selectorCache) {
+        final List<String> pending = new ArrayList<String>(selectors.size());
+        final List<Evaluator> evaluators = new ArrayList<Evaluator>(selectors.size());
+        for (String selector : selectors) {
+            if (pending.contains(selector) || selections.contains(selector)) {
+                continue;
+            }
+            Evaluator evaluator;
+            try {
+                evaluator = selectorCache.getEvaluator(selector);
+            } catch (RuntimeException e) {
+                continue;
+            }
+            if (evaluator == null) {
+                // the selector cannot be compiled ahead of time; it will be evaluated on its own
+                continue;
+            }
+            pending.add(selector);
+            evaluators.add(evaluator);
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+        final List<Elements> results = new ArrayList<Elements>(pending.size());
+        for (int i = 0; i < pending.size(); i++) {
+            results.add(new Elements());
+        }
+        new NodeTraversor(new NodeVisitor() {
+            @Override
+            public void head(Node node, int depth) {
+                if (node instanceof Element) {
+                    Element element = (Element) node;
+                    for (int i = 0; i < evaluators.size(); i++) {
+                        if (evaluators.get(i).matches(document, element)) {
+                            results.get(i).add(element);
+                        }
+                    }
+                }
+            }
+
+            @Override
+            public void tail(Node node, int depth) {
+            }
+        }).traverse(document);
+        for (int i = 0; i < pending.size(); i++) {
+            final Elements elements = results.get(i);
+            selections.get(pending.get(i), new Callable<Elements>() {
+                @Override
+                public Elements call() {
+                    return elements;
+                }
+            });
+        }
+    }
+
+    private static long estimateSize(Document document) {
+        final long[] size = new long[1];
+        new NodeTraversor(new NodeVisitor() {
+            @Override
+            public void head(Node node, int depth) {
+                size[0] += NODE_SIZE;
+                if (node instanceof Element) {
+                    for (Attribute attribute : ((Element) node).attributes()) {
+                        size[0] += NODE_SIZE + 2 * (attribute.getKey().length() + attribute.getValue().length());
+                    }
+                } else if (node instanceof TextNode) {
+                    size[0] += 2 * ((TextNode) node).getWholeText().length();
+                } else if (node instanceof DataNode) {
+                    size[0] += 2 * ((DataNode) node).getWholeData().length();
+                } else if (node instanceof Comment) {
+                    size[0] += 2 * ((Comment) node).getData().length();
+                }
+            }
+
+            @Override
+            public void tail(Node node, int depth) {
+            }
+        }).traverse(document);
+        return size[0];
+    }
+}
@@ -15,17 +15,45 @@
  ******************************************************************************/
 package io.sightly.tck.html;
 
-import java.util.Map;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 
+import io.sightly.tck.Constants;
+import io.sightly.tck.cache.SingleFlightCache;
+import io.sightly.tck.cache.Weigher;
+import io.sightly.tck.http.TimingInputStream;
+import io.sightly.tck.metrics.Metrics;
+import io.sightly.tck.metrics.Phase;
+
 public class HTMLExtractor {
 
-    private static Map<String, Document> documents = new ConcurrentHashMap<String, Document>();
+    /**
+     * The default maximum number of compiled selectors cached by the {@code HTMLExtractor}.
+     */
+    public static final int DEFAULT_SELECTOR_CACHE_SIZE = 1024;
+
+    private static final SingleFlightCache<String, CachedDocument> documents = new SingleFlightCache<String, CachedDocument>(
+            Integer.getInteger(Constants.SYS_PROP_DOCUMENT_CACHE_SIZE, 0), Long.getLong(Constants.SYS_PROP_DOCUMENT_CACHE_BYTES, 0),
+            new Weigher<CachedDocument>() {
+                @Override
+                public long weigh(CachedDocument document) {
+                    return document.getSize();
+                }
+            });
+    private static final ConcurrentMap<String, Collection<String>> plannedSelectors = new ConcurrentHashMap<String, Collection<String>>();
+    private static final SelectorCache selectors =
+            new SelectorCache(Integer.getInteger(Constants.SYS_PROP_SELECTOR_CACHE_SIZE, DEFAULT_SELECTOR_CACHE_SIZE));
 
     private HTMLExtractor() {}
 
@@ -40,10 +68,21 @@ public class HTMLExtractor {
      * @return the contents of the selected element
      */
     public static String innerHTML(String url, String markup, String selector) {
-        ensureMarkup(url, markup);
-        Document document = documents.get(url);
-        Elements elements = document.select(selector);
-        return elements.html();
+        return innerHTML(ensureMarkup(url, markup), selector);
+    }
+
+    /**
+     * Retrieves the content of the matched elements, without their own markup tags, identified by the {@code selector} from the document
+     * previously loaded for the {@code url}.
+     *
+     * @param url      the url that identifies the document
+     * @param selector the selector used for retrieval
+     * @return the contents of the selected element
+     * @throws IllegalStateException if no document was loaded for the {@code url}
+     * @see #load(String, Callable)
+     */
+    public static String innerHTML(String url, String selector) {
+        return innerHTML(getCachedDocument(url), selector);
     }
 
     /**
@@ -57,10 +96,22 @@ public class HTMLExtractor {
      * @return {@code true} if the {@code value} was found in the markup, {@code false} otherwise
      */
     public static boolean contains(String url, String markup, String selector, String value) {
-        ensureMarkup(url, markup);
-        Document document = documents.get(url);
-        Elements elements = document.select(selector);
-        return elements.outerHtml().contains(value);
+        return contains(ensureMarkup(url, markup), selector, value);
+    }
+
+    /**
+     * Checks if any of the elements identified by the {@code selector} from the document previously loaded for the {@code url} contain
+     * the text from {@code value}.
+     *
+     * @param url      the url that identifies the document
+     * @param selector the selector used for retrieval
+     * @param value    the text that should exist in the markup
+     * @return {@code true} if the {@code value} was found in the markup, {@code false} otherwise
+     * @throws IllegalStateException if no document was loaded for the {@code url}
+     * @see #load(String, Callable)
+     */
+    public static boolean contains(String url, String selector, String value) {
+        return contains(getCachedDocument(url), selector, value);
     }
 
     /**
@@ -73,10 +124,20 @@ public class HTMLExtractor {
      * @return {@code true} if the element identified by the {@code selector} exists, {@code false} otherwise
      */
     public static boolean exists(String url, String markup, String selector) {
-        ensureMarkup(url, markup);
-        Document document = documents.get(url);
-        Elements elements = document.select(selector);
-        return !elements.isEmpty();
+        return exists(ensureMarkup(url, markup), selector);
+    }
+
+    /**
+     * Checks if the {@code selector} identifies an element from the document previously loaded for the {@code url}.
+     *
+     * @param url      the url that identifies the document
+     * @param selector the selector used for retrieval
+     * @return {@code true} if the element identified by the {@code selector} exists, {@code false} otherwise
+     * @throws IllegalStateException if no document was loaded for the {@code url}
+     * @see #load(String, Callable)
+     */
+    public static boolean exists(String url, String selector) {
+        return exists(getCachedDocument(url), selector);
     }
 
     /**
@@ -90,13 +151,22 @@ public class HTMLExtractor {
      * @return {@code true} if the attribute was found, {@code false} otherwise
      */
     public static boolean hasAttribute(String url, String markup, String selector, String attributeName) {
-        ensureMarkup(url, markup);
-        Document document = documents.get(url);
-        Elements elements = document.select(selector);
-        if (elements.isEmpty()) {
-            throw new ElementNotFoundException("Cannot find element(s) with selector " + selector + ".");
-        }
-        return elements.hasAttr(attributeName);
+        return hasAttribute(ensureMarkup(url, markup), selector, attributeName);
+    }
+
+    /**
+     * Checks if any of the elements matched by the {@code selector} in the document previously loaded for the {@code url} contain the
+     * attribute {@code attributeName}.
+     *
+     * @param url            the url that identifies the document
+     * @param selector       the selector used for retrieval
+     * @param attributeName  the attribute's name
+     * @return {@code true} if the attribute was found, {@code false} otherwise
+     * @throws IllegalStateException if no document was loaded for the {@code url}
+     * @see #load(String, Callable)
+     */
+    public static boolean hasAttribute(String url, String selector, String attributeName) {
+        return hasAttribute(getCachedDocument(url), selector, attributeName);
     }
 
     /**
@@ -112,13 +182,23 @@ public class HTMLExtractor {
      * @return {@code true} if the attribute was found and has the specified value, {@code false} otherwise
      */
     public static boolean hasAttributeValue(String url, String markup, String selector, String attributeName, String attributeValue) {
-        ensureMarkup(url, markup);
-        Document document = documents.get(url);
-        Elements elements = document.select(selector);
-        if (elements.isEmpty()) {
-            throw new ElementNotFoundException("Cannot find element(s) with selector " + selector + ".");
-        }
-        return elements.hasAttr(attributeName) && attributeValue.equals(elements.attr(attributeName));
+        return hasAttributeValue(ensureMarkup(url, markup), selector, attributeName, attributeValue);
+    }
+
+    /**
+     * Checks if any of the elements matched by the {@code selector} in the document previously loaded for the {@code url} contain the
+     * attribute {@code attributeName} with value {@code attributeValue}.
+     *
+     * @param url            the url that identifies the document
+     * @param selector       the selector used for retrieval
+     * @param attributeName  the attribute's name
+     * @param attributeValue the attribute's value
+     * @return {@code true} if the attribute was found and has the specified value, {@code false} otherwise
+     * @throws IllegalStateException if no document was loaded for the {@code url}
+     * @see #load(String, Callable)
+     */
+    public static boolean hasAttributeValue(String url, String selector, String attributeName, String attributeValue) {
+        return hasAttributeValue(getCachedDocument(url), selector, attributeName, attributeValue);
     }
 
     /**
@@ -131,9 +211,197 @@ public class HTMLExtractor {
      * @return {@code true} if the number of children is equal to {@code howMany}, {@code false} otherwise
      */
     public static boolean hasChildren(String url, String markup, String selector, int howMany) {
+        return hasChildren(ensureMarkup(url, markup), selector, howMany);
+    }
+
+    /**
+     * Checks if the first element matched by the {@code selector} in the document previously loaded for the {@code url} has children and
+     * if their number is equal to {@code howMany}.
+     *
+     * @param url      the url that identifies the document
+     * @param selector the selector used for retrieval
+     * @param howMany  the number of expected children
+     * @return {@code true} if the number of children is equal to {@code howMany}, {@code false} otherwise
+     * @throws IllegalStateException if no document was loaded for the {@code url}
+     * @see #load(String, Callable)
+     */
+    public static boolean hasChildren(String url, String selector, int howMany) {
+        return hasChildren(getCachedDocument(url), selector, howMany);
+    }
+
+    public static boolean hasClosingTag(String url, String markup, String selector) {
+        return hasClosingTag(ensureMarkup(url, markup), selector);
+    }
+
+    public static boolean hasClosingTag(String url, String selector) {
+        return hasClosingTag(getCachedDocument(url), selector);
+    }
+
+    /**
+     * Parses the {@code markup} and caches the resulting document for the {@code url}, unless a document was already cached for it.
+     *
+     * @param url    the url that identifies the markup
+     * @param markup the markup
+     */
+    public static void parse(String url, String markup) {
         ensureMarkup(url, markup);
-        Document document = documents.get(url);
-        Element element = document.select(selector).first();
+    }
+
+    /**
+     * Caches the document provided by the {@code loader} for the {@code url}, unless a document was already cached for it. Concurrent
+     * callers for the same {@code url} wait for the first caller's loader to complete, so the {@code loader} is executed at most once per
+     * {@code url}; its failures are cached as well. The document is pinned in the cache until the {@code url} is {@link #release(String)
+     * released}: it's never evicted, so it's never fetched twice, and it doesn't count against the cache's bounds. If selectors were
+     * {@link #plan(String, Collection) planned} for the {@code url}, they are all evaluated in a single traversal of the loaded
+     * document.
+     *
+     * @param url    the url that identifies the document
+     * @param loader the loader providing the document
+     * @return the document cached for the {@code url}
+     */
+    public static Document load(final String url, final Callable<Document> loader) {
+        Callable<CachedDocument> documentLoader = new Callable<CachedDocument>() {
+            @Override
+            public CachedDocument call() throws Exception {
+                CachedDocument document = new CachedDocument(loader.call());
+                evaluatePlanned(url, document, plannedSelectors.get(url));
+                return document;
+            }
+        };
+        return documents.get(url, documentLoader, true).getDocument();
+    }
+
+    /**
+     * Checks if a document was loaded, or is being loaded, for the {@code url}, including a document whose loading failed.
+     *
+     * @param url the url that identifies the document
+     * @return {@code true} if the {@code url} has a cached document, {@code false} otherwise
+     */
+    public static boolean isLoaded(String url) {
+        return documents.contains(url);
+    }
+
+    /**
+     * Parses the markup available from the {@code stream}, without caching the resulting document. The parsing time is recorded as the
+     * {@link Phase#PARSE} phase of the {@code url}, excluding the time spent waiting for the stream's data.
+     *
+     * @param stream  the stream providing the markup
+     * @param charset the character set of the markup
+     * @param url     the url that identifies the markup, used for resolving relative URLs
+     * @return the document
+     * @throws IOException if the markup cannot be read
+     */
+    public static Document parseDocument(InputStream stream, String charset, String url) throws IOException {
+        long start = System.nanoTime();
+        TimingInputStream timingStream = new TimingInputStream(stream);
+        Document document = Jsoup.parse(timingStream, charset, url);
+        Metrics.record(Phase.PARSE, url, System.nanoTime() - start - timingStream.getNanos());
+        return document;
+    }
+
+    /**
+     * Registers the {@code selectors} which will be evaluated on the document of the {@code url}. When the document is {@link
+     * #load(String, Callable) loaded}, or right away if it was already loaded, all of them are matched in a single traversal of the
+     * document and their results are memoized, so that the following lookups don't have to traverse the document again.
+     *
+     * @param url       the url that identifies the document
+     * @param selectors the selectors which will be evaluated on the document
+     */
+    public static void plan(String url, Collection<String> selectors) {
+        List<String> planned = new ArrayList<String>(selectors);
+        plannedSelectors.put(url, planned);
+        CachedDocument document;
+        try {
+            document = documents.getIfPresent(url);
+        } catch (RuntimeException e) {
+            // the loading failure is reported by the lookups
+            return;
+        }
+        if (document != null) {
+            evaluatePlanned(url, document, planned);
+        }
+    }
+
+    private static void evaluatePlanned(String url, CachedDocument document, Collection<String> planned) {
+        if (planned != null) {
+            long start = System.nanoTime();
+            document.selectAll(planned, selectors);
+            Metrics.record(Phase.BATCH_EVALUATION, url, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Releases the document cached for the {@code url}, together with all the selection results computed on it and the selectors
+     * planned for it. Subsequent calls for
+     * the {@code url} will have to load the document again.
+     *
+     * @param url the url that identifies the document
+     */
+    public static void release(String url) {
+        plannedSelectors.remove(url);
+        documents.remove(url);
+    }
+
+    /**
+     * Returns the number of documents currently cached.
+     *
+     * @return the number of cached documents
+     */
+    public static int getCachedDocuments() {
+        return documents.size();
+    }
+
+    /**
+     * Returns the estimated size in bytes of the documents currently cached.
+     *
+     * @return the estimated size of the cached documents
+     */
+    public static long getCachedDocumentsSize() {
+        return documents.weight();
+    }
+
+    /**
+     * Returns the cache of compiled selectors used by all the {@code HTMLExtractor} methods.
+     *
+     * @return the selector cache
+     */
+    public static SelectorCache getSelectorCache() {
+        return selectors;
+    }
+
+    private static String innerHTML(CachedDocument document, String selector) {
+        Elements elements = document.select(selector, selectors);
+        return elements.html();
+    }
+
+    private static boolean contains(CachedDocument document, String selector, String value) {
+        Elements elements = document.select(selector, selectors);
+        return elements.outerHtml().contains(value);
+    }
+
+    private static boolean exists(CachedDocument document, String selector) {
+        Elements elements = document.select(selector, selectors);
+        return !elements.isEmpty();
+    }
+
+    private static boolean hasAttribute(CachedDocument document, String selector, String attributeName) {
+        Elements elements = document.select(selector, selectors);
+        if (elements.isEmpty()) {
+            throw new ElementNotFoundException("Cannot find element(s) with selector " + selector + ".");
+        }
+        return elements.hasAttr(attributeName);
+    }
+
+    private static boolean hasAttributeValue(CachedDocument document, String selector, String attributeName, String attributeValue) {
+        Elements elements = document.select(selector, selectors);
+        if (elements.isEmpty()) {
+            throw new ElementNotFoundException("Cannot find element(s) with selector " + selector + ".");
+        }
+        return elements.hasAttr(attributeName) && attributeValue.equals(elements.attr(attributeName));
+    }
+
+    private static boolean hasChildren(CachedDocument document, String selector, int howMany) {
+        Element element = document.select(selector, selectors).first();
         if (element == null) {
             throw new ElementNotFoundException("Cannot find element(s) with selector " + selector + ".");
         }
@@ -141,19 +409,31 @@ public class HTMLExtractor {
 
     }
 
-    public static boolean hasClosingTag(String url, String markup, String selector) {
-        ensureMarkup(url, markup);
-        Document document = documents.get(url);
-        Element element = document.select(selector).first();
+    private static boolean hasClosingTag(CachedDocument document, String selector) {
+        Element element = document.select(selector, selectors).first();
         if (element == null) {
             throw new ElementNotFoundException("Cannot find element(s) with selector " + selector + ".");
         }
         return !element.tag().isEmpty();
     }
 
-    private static void ensureMarkup(String url, String markup) {
-        if (!documents.containsKey(url)) {
-            documents.put(url, Jsoup.parse(markup));
+    private static CachedDocument getCachedDocument(String url) {
+        CachedDocument document = documents.getIfPresent(url);
+        if (document == null) {
+            throw new IllegalStateException("No document was loaded for url " + url + ".");
         }
+        return document;
+    }
+
+    private static CachedDocument ensureMarkup(final String url, final String markup) {
+        return documents.get(url, new Callable<CachedDocument>() {
+            @Override
+            public CachedDocument call() {
+                long start = System.nanoTime();
+                Document document = Jsoup.parse(markup);
+                Metrics.record(Phase.PARSE, url, System.nanoTime() - start);
+                return new CachedDocument(document);
+            }
+        });
     }
 }
@@ -0,0 +1,162 @@
+/*******************************************************************************
+ * Copyright 2014 Adobe Systems Incorporated
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package io.sightly.tck.html;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jsoup.helper.Validate;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Collector;
+import org.jsoup.select.Elements;
+import org.jsoup.select.Evaluator;
+
+/**
+ * Thread-safe, bounded cache of compiled CSS selectors. Selecting elements through this cache is equivalent to {@link
+ * Element#select(String)}, without parsing the same selector string more than once while it's cached. The least recently used
+ * selectors are evicted once the cache is full.
+ * <p>
+ * jsoup doesn't expose its selector parser, so it's looked up reflectively; if that's not possible every selection falls back to
+ * {@link Element#select(String)}.
+ */
+public class SelectorCache {
+
+    private static final Method PARSER = getParser();
+
+    private final Map<String, Evaluator> evaluators;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Creates a selector cache.
+     *
+     * @param maxSize the maximum number of compiled selectors kept in the cache
+     */
+    public SelectorCache(final int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("The maximum size has to be a positive integer.");
+        }
+        evaluators = new LinkedHashMap<String, Evaluator>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Evaluator> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Finds the elements matching the {@code selector} in the tree rooted at {@code root}, including {@code root} itself.
+     *
+     * @param selector the CSS selector
+     * @param root     the root of the tree to search
+     * @return the matching elements
+     */
+    public Elements select(String selector, Element root) {
+        Evaluator evaluator = getEvaluator(selector);
+        if (evaluator == null) {
+            return root.select(selector);
+        }
+        return Collector.collect(evaluator, root);
+    }
+
+    /**
+     * Returns the compiled form of the {@code selector}, compiling and caching it if needed.
+     *
+     * @param selector the CSS selector
+     * @return the compiled selector, or {@code null} if selectors cannot be compiled ahead of time
+     */
+    Evaluator getEvaluator(String selector) {
+        if (PARSER == null) {
+            return null;
+        }
+        Evaluator evaluator;
+        synchronized (evaluators) {
+            evaluator = evaluators.get(selector);
+        }
+        if (evaluator != null) {
+            hits.incrementAndGet();
+            return evaluator;
+        }
+        misses.incrementAndGet();
+        evaluator = compile(selector);
+        synchronized (evaluators) {
+            evaluators.put(selector, evaluator);
+        }
+        return evaluator;
+    }
+
+    /**
+     * Returns the number of selections which used an already compiled selector.
+     *
+     * @return the number of cache hits
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of selections which had to compile their selector.
+     *
+     * @return the number of cache misses
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the number of compiled selectors currently cached.
+     *
+     * @return the number of cached selectors
+     */
+    public int size() {
+        synchronized (evaluators) {
+            return evaluators.size();
+        }
+    }
+
+    private static Evaluator compile(String selector) {
+        Validate.notNull(selector);
+        String query = selector.trim();
+        Validate.notEmpty(query);
+        try {
+            return (Evaluator) PARSER.invoke(null, query);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException("Unable to compile selector " + selector + ".", cause);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Unable to compile selector " + selector + ".", e);
+        }
+    }
+
+    private static Method getParser() {
+        try {
+            Method parser = Class.forName("org.jsoup.select.QueryParser").getDeclaredMethod("parse", String.class);
+            parser.setAccessible(true);
+            return parser;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*******************************************************************************
+ * Copyright 2014 Adobe Systems Incorporated
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package io.sightly.tck.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * {@link FilterInputStream} which keeps a copy of the bytes read, as long as they don't exceed a maximum size, so that a completely read
+ * response body can be stored in a {@link ResponseCache}.
+ */
+class CapturingInputStream extends FilterInputStream {
+
+    private final long maxSize;
+    private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+    private boolean complete;
+
+    CapturingInputStream(InputStream in, long maxSize) {
+        super(in);
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b == -1) {
+            complete = true;
+        } else if (capture(1)) {
+            copy.write(b);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int read = super.read(b, off, len);
+        if (read == -1) {
+            complete = true;
+        } else if (read > 0 && capture(read)) {
+            copy.write(b, off, read);
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        // skipped bytes cannot be captured
+        copy = null;
+        return super.skip(n);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    /**
+     * Returns the bytes read from the stream, if the whole stream was read and it didn't exceed the maximum size.
+     *
+     * @return the bytes read, or {@code null} if the stream wasn't completely captured
+     */
+    byte[] getCapturedBytes() {
+        return complete && copy != null ? copy.toByteArray() : null;
+    }
+
+    private boolean capture(int bytes) {
+        if (copy != null && copy.size() + bytes > maxSize) {
+            copy = null;
+        }
+        return copy != null;
+    }
+}
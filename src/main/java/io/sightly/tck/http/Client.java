@@ -15,38 +15,101 @@
  ******************************************************************************/
 package io.sightly.tck.http;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 
 import org.apache.commons.httpclient.Credentials;
 import org.apache.commons.httpclient.DefaultHttpMethodRetryHandler;
+import org.apache.commons.httpclient.Header;
+import org.apache.commons.httpclient.HeaderElement;
+import org.apache.commons.httpclient.HostConfiguration;
 import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.HttpVersion;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.NameValuePair;
+import org.apache.commons.httpclient.URI;
+import org.apache.commons.httpclient.URIException;
 import org.apache.commons.httpclient.UsernamePasswordCredentials;
 import org.apache.commons.httpclient.auth.AuthScope;
 import org.apache.commons.httpclient.methods.GetMethod;
 import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
 import org.apache.commons.httpclient.params.HttpMethodParams;
+import org.apache.commons.httpclient.protocol.Protocol;
+import org.apache.commons.httpclient.protocol.ProtocolSocketFactory;
+import org.apache.commons.httpclient.util.IdleConnectionTimeoutThread;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.commons.lang.StringUtils;
+
+import io.sightly.tck.metrics.Metrics;
+import io.sightly.tck.metrics.Phase;
 
 /**
- * Basic wrapper on top of the Apache HTTP Client.
+ * Basic wrapper on top of the Apache HTTP Client. Requests are executed over persistent HTTP/1.1 connections taken from a pool, which
+ * makes instances thread-safe and meant to be shared.
+ * <p>
+ * Besides the blocking API, requests can be executed asynchronously with {@link #getContentAsync(String, int, ResponseHandler,
+ * ResponseCallback)}. On JDKs providing virtual threads each asynchronous request runs on its own virtual thread, otherwise on a pool
+ * with as many threads as the maximum number of connections, since more requests cannot be in flight at the same time anyway.
  */
 public class Client {
 
 
     public static final int CONNECTION_TIMEOUT = 5000;
     public static final int SO_TIMEOUT = 5000;
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 20;
+    public static final int DEFAULT_MAX_CONNECTIONS = 100;
+    public static final long DEFAULT_IDLE_CONNECTION_TIMEOUT = 30000;
+    public static final String DEFAULT_CHARSET = "UTF-8";
+
+    private static final String ACCEPT_ENCODING = "gzip, deflate";
+
+    private static final ResponseHandler<String> STRING_HANDLER = new ResponseHandler<String>() {
+        @Override
+        public String handle(InputStream body, String charset) throws IOException {
+            return IOUtils.toString(body, charset);
+        }
+    };
+
+    private static final Protocol HTTP = new Protocol("http", (ProtocolSocketFactory) new TimingSocketFactory(), 80);
 
     private HttpClient client;
+    private MultiThreadedHttpConnectionManager connectionManager;
+    private IdleConnectionTimeoutThread idleConnectionTimeoutThread;
+    private final String user;
+    private final int maxConnections;
+    private final long idleConnectionTimeout;
+    private ExecutorService executor;
+    private volatile long maxBodySize;
+    private volatile boolean compression;
+    private volatile ResponseCache responseCache;
+    private volatile ResponseRecorder recorder;
+    private volatile ResponseArchive replayArchive;
 
     /**
      * Creates a basic HTTP client.
      */
     public Client() {
-        client = new HttpClient();
-        client.getHttpConnectionManager().setParams(prepareDefaultClientParameters());
-        DefaultHttpMethodRetryHandler retryHandler = new DefaultHttpMethodRetryHandler(3, true);
-        client.getParams().setParameter(HttpMethodParams.RETRY_HANDLER, retryHandler);
+        this(null, null, DEFAULT_MAX_CONNECTIONS_PER_HOST, DEFAULT_MAX_CONNECTIONS, DEFAULT_IDLE_CONNECTION_TIMEOUT);
     }
 
     /**
@@ -56,10 +119,43 @@ public class Client {
      * @param password the password
      */
     public Client(String user, String password) {
-        this();
-        client.getParams().setAuthenticationPreemptive(true);
-        Credentials credentials = new UsernamePasswordCredentials(user, password);
-        client.getState().setCredentials(AuthScope.ANY, credentials);
+        this(user, password, DEFAULT_MAX_CONNECTIONS_PER_HOST, DEFAULT_MAX_CONNECTIONS, DEFAULT_IDLE_CONNECTION_TIMEOUT);
+    }
+
+    /**
+     * Creates an HTTP client backed by a connection pool of the given size.
+     *
+     * @param user                  the user used for Basic authentication; if {@code null} no authentication will be performed
+     * @param password              the password used for Basic authentication
+     * @param maxConnectionsPerHost the maximum number of pooled connections to a single host
+     * @param maxConnections        the maximum number of pooled connections
+     * @param idleConnectionTimeout the time in milliseconds after which idle connections are closed; {@code 0} keeps idle connections
+     *                              open until the client is shut down
+     */
+    public Client(String user, String password, int maxConnectionsPerHost, int maxConnections, long idleConnectionTimeout) {
+        this.user = user;
+        this.maxConnections = maxConnections;
+        this.idleConnectionTimeout = idleConnectionTimeout;
+        connectionManager = new MultiThreadedHttpConnectionManager();
+        connectionManager.setParams(prepareDefaultClientParameters(maxConnectionsPerHost, maxConnections));
+        client = new HttpClient(connectionManager);
+        client.getParams().setParameter(HttpMethodParams.PROTOCOL_VERSION, HttpVersion.HTTP_1_1);
+        DefaultHttpMethodRetryHandler retryHandler = new DefaultHttpMethodRetryHandler(3, true);
+        client.getParams().setParameter(HttpMethodParams.RETRY_HANDLER, retryHandler);
+        if (user != null) {
+            client.getParams().setAuthenticationPreemptive(true);
+            Credentials credentials = new UsernamePasswordCredentials(user, password);
+            client.getState().setCredentials(AuthScope.ANY, credentials);
+        }
+        if (idleConnectionTimeout > 0) {
+            idleConnectionTimeoutThread = new IdleConnectionTimeoutThread();
+            idleConnectionTimeoutThread.setName("tck-idle-connection-evictor");
+            idleConnectionTimeoutThread.setDaemon(true);
+            idleConnectionTimeoutThread.setConnectionTimeout(idleConnectionTimeout);
+            idleConnectionTimeoutThread.setTimeoutInterval(Math.max(1000, idleConnectionTimeout / 2));
+            idleConnectionTimeoutThread.addConnectionManager(connectionManager);
+            idleConnectionTimeoutThread.start();
+        }
     }
 
     /**
@@ -72,27 +168,444 @@ public class Client {
      * @throws ClientException if the server's status code differs from the {@code expectedStatusCode} or if any other error is encountered
      */
     public String getStringContent(String url, int expectedStatusCode) {
-        GetMethod method = new GetMethod(url);
+        return getContent(url, expectedStatusCode, STRING_HANDLER);
+    }
+
+    /**
+     * Retrieves the content available at {@code url}, streaming the response body to the {@code handler}. The server must respond with a
+     * status code equal to {@code expectedStatusCode}, otherwise this method will throw a {@link ClientException}; the response body
+     * cannot be larger than the maximum body size. If a {@link ResponseCache} is set, a cached response is revalidated with a conditional
+     * request and its body is reused if the server responds with {@code 304 Not Modified}. If a {@link ResponseRecorder} is set, the
+     * response is recorded; if a {@link ResponseArchive} is set for replay, the recorded response is used and no request is sent.
+     *
+     * @param url                the URL from which to retrieve the content
+     * @param expectedStatusCode the expected status code from the server
+     * @param handler            the handler consuming the response body
+     * @param <T>                the type of the content produced by the {@code handler}
+     * @return the content produced by the {@code handler}
+     * @throws ClientException if the server's status code differs from the {@code expectedStatusCode}, if the response body is too large
+     *                         or if any other error is encountered
+     * @see #setMaxBodySize(long)
+     */
+    public <T> T getContent(String url, int expectedStatusCode, ResponseHandler<T> handler) {
+        ResponseArchive archive = replayArchive;
+        if (archive != null) {
+            return replay(archive, url, expectedStatusCode, handler);
+        }
+        HostConfiguration hostConfiguration = new HostConfiguration();
+        GetMethod method = createMethod(url, hostConfiguration);
+        ResponseCache cache = responseCache;
+        ResponseRecorder recorder = this.recorder;
+        ResponseCache.Entry cached = cache == null ? null : cache.get(url, user);
+        if (compression) {
+            method.setRequestHeader("Accept-Encoding", ACCEPT_ENCODING);
+        }
+        if (cached != null) {
+            if (cached.getETag() != null) {
+                method.setRequestHeader("If-None-Match", cached.getETag());
+            }
+            if (cached.getLastModified() != null) {
+                method.setRequestHeader("If-Modified-Since", cached.getLastModified());
+            }
+        }
         try {
-            int statusCode = client.executeMethod(method);
+            long start = System.nanoTime();
+            int statusCode = client.executeMethod(hostConfiguration, method);
+            long connectTime = TimingSocketFactory.takeConnectTime();
+            if (connectTime > 0) {
+                Metrics.record(Phase.CONNECT, url, connectTime);
+            }
+            Metrics.record(Phase.TIME_TO_FIRST_BYTE, url, System.nanoTime() - start - connectTime);
+            boolean notModified = cached != null && statusCode == HttpStatus.SC_NOT_MODIFIED;
+            if (notModified) {
+                statusCode = cached.getStatusCode();
+            }
             if (statusCode == expectedStatusCode) {
-                InputStream is = method.getResponseBodyAsStream();
-                return IOUtils.toString(is, "UTF-8");
+                long contentLength = notModified ? cached.getBody().length : method.getResponseContentLength();
+                checkBodySize(url, contentLength);
+                InputStream is = notModified ? new ByteArrayInputStream(cached.getBody()) : method.getResponseBodyAsStream();
+                CapturingInputStream capture = null;
+                boolean cacheable = cache != null && !notModified && (method.getResponseHeader("ETag") != null ||
+                        method.getResponseHeader("Last-Modified") != null);
+                if (is != null && (cacheable || recorder != null)) {
+                    capture = new CapturingInputStream(is, recorder != null ? Integer.MAX_VALUE : cache.getMaxSize());
+                    is = capture;
+                }
+                String charset = notModified ? cached.getCharset() : getCharset(method.getResponseHeader("Content-Type"));
+                String contentEncoding = notModified ? cached.getContentEncoding() : getHeader(method, "Content-Encoding");
+                T content = handle(url, is, contentEncoding, charset, handler);
+                byte[] body = capture == null ? new byte[0] : capture.getCapturedBytes();
+                if (body != null && cacheable) {
+                    try {
+                        cache.put(url, user, new ResponseCache.Entry(statusCode, getHeader(method, "ETag"),
+                                getHeader(method, "Last-Modified"), charset, contentEncoding, body));
+                    } catch (IOException e) {
+                        // the cache only saves bandwidth; failing to store a response doesn't fail the request
+                    }
+                }
+                if (body != null && recorder != null) {
+                    // a 304 doesn't describe the cached body, which is recorded with the content encoding it was stored with
+                    Header[] headers = notModified ? withContentEncoding(method.getResponseHeaders(), contentEncoding) :
+                            method.getResponseHeaders();
+                    record(recorder, url, statusCode, charset, headers, body);
+                }
+                return content;
             } else {
+                if (recorder != null) {
+                    byte[] body = method.getResponseBody();
+                    record(recorder, url, statusCode, getCharset(method.getResponseHeader("Content-Type")), method.getResponseHeaders(),
+                            body == null ? new byte[0] : body);
+                }
                 throw new ClientException(String.format("Received status code %d, expected %d - url %s", statusCode, expectedStatusCode,
                         url));
             }
         } catch (IOException e) {
             throw new ClientException("Unable to complete request to " + url, e);
+        } finally {
+            method.releaseConnection();
         }
     }
 
+    /**
+     * Asynchronously retrieves the content available at {@code url}, like {@link #getContent(String, int, ResponseHandler)}, without
+     * blocking the calling thread. The {@code callback} is notified when the request completes, on the thread which executed it.
+     *
+     * @param url                the URL from which to retrieve the content
+     * @param expectedStatusCode the expected status code from the server
+     * @param handler            the handler consuming the response body
+     * @param callback           the callback notified of the request's outcome; can be {@code null}
+     * @param <T>                the type of the content produced by the {@code handler}
+     * @return a future providing the content produced by the {@code handler}, or failing with the request's {@link ClientException}
+     */
+    public <T> Future<T> getContentAsync(final String url, final int expectedStatusCode, final ResponseHandler<T> handler,
+                                         ResponseCallback<T> callback) {
+        CallbackFutureTask<T> task = new CallbackFutureTask<T>(new Callable<T>() {
+            @Override
+            public T call() {
+                return getContent(url, expectedStatusCode, handler);
+            }
+        }, callback);
+        getExecutor().execute(task);
+        return task;
+    }
 
-    private HttpConnectionManagerParams prepareDefaultClientParameters() {
+    /**
+     * Enables the negotiation of compressed responses: requests accept the {@code gzip} and {@code deflate} content encodings and
+     * compressed bodies are decompressed while they are streamed to the handler. Disabled by default.
+     *
+     * @param compression {@code true} to accept compressed responses, {@code false} otherwise
+     */
+    public void setCompression(boolean compression) {
+        this.compression = compression;
+    }
+
+    /**
+     * Sets the archive from which all the responses are replayed; no request is sent while an archive is set. {@code null} (the
+     * default) disables replaying.
+     *
+     * @param replayArchive the archive
+     */
+    public void setReplayArchive(ResponseArchive replayArchive) {
+        this.replayArchive = replayArchive;
+    }
+
+    /**
+     * Sets the recorder to which all the responses received by this client are written; {@code null} (the default) disables recording.
+     *
+     * @param recorder the recorder
+     */
+    public void setRecorder(ResponseRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    /**
+     * Sets the maximum size in bytes of the response bodies this client accepts; {@code 0} (the default) doesn't limit the size.
+     *
+     * @param maxBodySize the maximum size in bytes
+     */
+    public void setMaxBodySize(long maxBodySize) {
+        this.maxBodySize = Math.max(0, maxBodySize);
+    }
+
+    /**
+     * Sets the cache used for revalidating the responses fetched in previous runs; {@code null} (the default) disables caching.
+     *
+     * @param responseCache the response cache
+     */
+    public void setResponseCache(ResponseCache responseCache) {
+        this.responseCache = responseCache;
+    }
+
+    /**
+     * Returns the maximum number of pooled connections to a single host.
+     *
+     * @return the maximum number of connections per host
+     */
+    public int getMaxConnectionsPerHost() {
+        return connectionManager.getParams().getDefaultMaxConnectionsPerHost();
+    }
+
+    /**
+     * Returns the maximum number of pooled connections.
+     *
+     * @return the maximum number of connections
+     */
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    /**
+     * Returns the time in milliseconds after which idle connections are closed; {@code 0} if idle connections are kept open.
+     *
+     * @return the idle connection timeout
+     */
+    public long getIdleConnectionTimeout() {
+        return idleConnectionTimeout;
+    }
+
+    /**
+     * Closes all the pooled connections, stops the idle connections eviction and interrupts the pending asynchronous requests. The
+     * client cannot be used afterwards.
+     */
+    public void shutdown() {
+        synchronized (this) {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+        if (idleConnectionTimeoutThread != null) {
+            idleConnectionTimeoutThread.shutdown();
+        }
+        connectionManager.shutdown();
+    }
+
+    private synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = createVirtualThreadExecutor();
+            if (executor == null) {
+                executor = Executors.newFixedThreadPool(maxConnections, new ClientThreadFactory());
+            }
+        }
+        return executor;
+    }
+
+    private static ExecutorService createVirtualThreadExecutor() {
+        try {
+            // looked up reflectively, since the TCK is compiled for JDKs without virtual threads
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Creates the request for {@code url}. Plain HTTP requests are sent to an explicit host configuration using the {@link
+     * TimingSocketFactory}, so that the time spent connecting can be told apart from the time spent waiting for the response.
+     */
+    private static GetMethod createMethod(String url, HostConfiguration hostConfiguration) {
+        URI uri;
+        try {
+            uri = new URI(url, true);
+        } catch (URIException e) {
+            throw new IllegalArgumentException("Invalid URL " + url, e);
+        }
+        if (!HTTP.getScheme().equalsIgnoreCase(uri.getScheme())) {
+            GetMethod method = new GetMethod(url);
+            hostConfiguration.setHost(uri);
+            return method;
+        }
+        GetMethod method = new GetMethod();
+        try {
+            method.setPath(uri.getPath() == null ? "/" : uri.getEscapedPath());
+            method.setQueryString(uri.getEscapedQuery());
+            hostConfiguration.setHost(uri.getHost(), uri.getPort(), HTTP);
+        } catch (URIException e) {
+            throw new IllegalArgumentException("Invalid URL " + url, e);
+        }
+        return method;
+    }
+
+    private <T> T replay(ResponseArchive archive, String url, int expectedStatusCode, ResponseHandler<T> handler) {
+        ResponseArchive.Response response = archive.get(url);
+        if (response == null) {
+            throw new ClientException("No response was recorded for url " + url + " in archive " + archive.getFile().getAbsolutePath());
+        }
+        if (response.getStatusCode() != expectedStatusCode) {
+            throw new ClientException(String.format("Received status code %d, expected %d - url %s", response.getStatusCode(),
+                    expectedStatusCode, url));
+        }
+        checkBodySize(url, response.getBodySize());
+        try {
+            return handle(url, response.openBody(), response.getContentEncoding(), response.getCharset(), handler);
+        } catch (IOException e) {
+            throw new ClientException("Unable to replay the response of " + url, e);
+        }
+    }
+
+    /**
+     * Streams a response body to the {@code handler}, decoding its content encoding on the fly. The time spent waiting for the body is
+     * recorded, and the size of the body is recorded both as received and as decoded. The maximum body size applies to the decoded
+     * body.
+     */
+    private <T> T handle(String url, InputStream body, String contentEncoding, String charset, ResponseHandler<T> handler)
+            throws IOException {
+        TimingInputStream timingStream = new TimingInputStream(body == null ? new ByteArrayInputStream(new byte[0]) : body);
+        CountingInputStream decoded = null;
+        try {
+            decoded = new CountingInputStream(decode(url, timingStream, contentEncoding));
+            InputStream is = maxBodySize > 0 ? new LimitedInputStream(decoded, maxBodySize, url) : decoded;
+            T content = handler.handle(is, charset);
+            // decompressors stop at the end of the compressed data; reading the rest of the body marks it as completely received
+            IOUtils.copy(timingStream, NullOutputStream.NULL_OUTPUT_STREAM);
+            return content;
+        } finally {
+            if (decoded != null) {
+                decoded.close();
+            }
+            timingStream.close();
+            Metrics.record(Phase.DOWNLOAD, url, timingStream.getNanos());
+            Metrics.recordBytes(url, timingStream.getBytes(), decoded == null ? 0 : decoded.getByteCount());
+        }
+    }
+
+    private static InputStream decode(String url, InputStream body, String contentEncoding) throws IOException {
+        if (contentEncoding == null) {
+            return body;
+        }
+        String encoding = contentEncoding.trim().toLowerCase(Locale.ENGLISH);
+        if (encoding.length() == 0 || "identity".equals(encoding)) {
+            return body;
+        }
+        if ("gzip".equals(encoding) || "x-gzip".equals(encoding)) {
+            return new GZIPInputStream(body);
+        }
+        if ("deflate".equals(encoding)) {
+            // the deflate encoding is a zlib stream, but some servers send a raw deflate stream instead
+            PushbackInputStream pushback = new PushbackInputStream(body, 2);
+            int first = pushback.read();
+            int second = first == -1 ? -1 : pushback.read();
+            if (second != -1) {
+                pushback.unread(second);
+            }
+            if (first != -1) {
+                pushback.unread(first);
+            }
+            boolean zlib = first != -1 && second != -1 && (first & 0x0f) == 8 && ((first << 8) | second) % 31 == 0;
+            final Inflater inflater = new Inflater(!zlib);
+            return new InflaterInputStream(pushback, inflater) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        inflater.end();
+                    }
+                }
+            };
+        }
+        throw new ClientException("Unsupported content encoding " + contentEncoding + " - url " + url);
+    }
+
+    private void checkBodySize(String url, long contentLength) {
+        long maxBodySize = this.maxBodySize;
+        if (maxBodySize > 0 && contentLength > maxBodySize) {
+            throw new ClientException(String.format("The response body has %d bytes, exceeding the maximum size of %d bytes - url %s",
+                    contentLength, maxBodySize, url));
+        }
+    }
+
+    private static void record(ResponseRecorder recorder, String url, int statusCode, String charset, Header[] headers, byte[] body) {
+        try {
+            recorder.record(url, statusCode, charset, headers, body);
+        } catch (IOException e) {
+            throw new ClientException("Unable to record the response of " + url + " in archive " +
+                    recorder.getFile().getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Replaces the {@code Content-Encoding} and {@code Content-Length} headers, which describe the body actually sent, so that the
+     * headers describe a body with the {@code contentEncoding}.
+     */
+    private static Header[] withContentEncoding(Header[] headers, String contentEncoding) {
+        List<Header> result = new ArrayList<Header>(headers.length + 1);
+        for (Header header : headers) {
+            if (!"Content-Encoding".equalsIgnoreCase(header.getName()) && !"Content-Length".equalsIgnoreCase(header.getName())) {
+                result.add(header);
+            }
+        }
+        if (contentEncoding != null) {
+            result.add(new Header("Content-Encoding", contentEncoding));
+        }
+        return result.toArray(new Header[result.size()]);
+    }
+
+    private static String getHeader(GetMethod method, String name) {
+        Header header = method.getResponseHeader(name);
+        return header == null ? null : header.getValue();
+    }
+
+    private static String getCharset(Header contentType) {
+        if (contentType != null) {
+            for (HeaderElement element : contentType.getElements()) {
+                NameValuePair charset = element.getParameterByName("charset");
+                if (charset != null && StringUtils.isNotBlank(charset.getValue())) {
+                    return charset.getValue().trim();
+                }
+            }
+        }
+        return DEFAULT_CHARSET;
+    }
+
+    private HttpConnectionManagerParams prepareDefaultClientParameters(int maxConnectionsPerHost, int maxConnections) {
         HttpConnectionManagerParams params = new HttpConnectionManagerParams();
         params.setSoTimeout(SO_TIMEOUT);
         params.setConnectionTimeout(CONNECTION_TIMEOUT);
+        params.setStaleCheckingEnabled(true);
+        params.setDefaultMaxConnectionsPerHost(maxConnectionsPerHost);
+        params.setMaxTotalConnections(maxConnections);
         return params;
     }
 
+    private static class CallbackFutureTask<T> extends FutureTask<T> {
+
+        private final ResponseCallback<T> callback;
+
+        CallbackFutureTask(Callable<T> callable, ResponseCallback<T> callback) {
+            super(callable);
+            this.callback = callback;
+        }
+
+        @Override
+        protected void done() {
+            if (callback == null || isCancelled()) {
+                return;
+            }
+            try {
+                callback.completed(get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    callback.failed((RuntimeException) cause);
+                } else {
+                    callback.failed(new ClientException("Unable to complete the request.", cause));
+                }
+            }
+        }
+    }
+
+    private static class ClientThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "tck-http-client-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
 }
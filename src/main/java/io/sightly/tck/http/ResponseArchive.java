@@ -0,0 +1,270 @@
+/*******************************************************************************
+ * Copyright 2014 Adobe Systems Incorporated
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package io.sightly.tck.http;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.httpclient.Header;
+import org.apache.commons.httpclient.URI;
+import org.apache.commons.httpclient.URIException;
+
+/**
+ * Read-only view of the HTTP responses recorded by a {@link ResponseRecorder}. The archive file is memory-mapped and the response
+ * bodies are streamed straight from the mapped file. Responses are looked up by their URL relative to the server URL the archive was
+ * recorded, respectively is replayed, against, so that an archive recorded against a server can be replayed under any server URL,
+ * including one with a different context path. Without a server URL, responses are looked up by the path and query of their URL.
+ * Instances are thread-safe.
+ * <p>
+ * An archive file is made of a header, the recorded responses and an index mapping each URL to its response's position, followed by a
+ * trailer pointing to the index. Archives cannot be larger than 2GB.
+ */
+public final class ResponseArchive {
+
+    static final int MAGIC = 0x48544c52;
+    static final int VERSION = 1;
+    static final Charset CHARSET = Charset.forName("UTF-8");
+
+    private final File file;
+    private final ByteBuffer buffer;
+    private final Map<String, Integer> index;
+    private final String serverURL;
+
+    private ResponseArchive(File file, ByteBuffer buffer, Map<String, Integer> index, String serverURL) {
+        this.file = file;
+        this.buffer = buffer;
+        this.index = index;
+        this.serverURL = serverURL;
+    }
+
+    /**
+     * Opens an archive file, whose responses are looked up by the path and query of their URL.
+     *
+     * @param file the archive file
+     * @return the archive
+     * @throws IOException if the file cannot be read or is not a complete archive
+     */
+    public static ResponseArchive open(File file) throws IOException {
+        return open(file, null);
+    }
+
+    /**
+     * Opens an archive file, whose responses are looked up by their URL relative to the {@code serverURL}.
+     *
+     * @param file      the archive file
+     * @param serverURL the server URL under which the responses are replayed; {@code null} looks the responses up by the path and query
+     *                  of their URL
+     * @return the archive
+     * @throws IOException if the file cannot be read or is not a complete archive
+     */
+    public static ResponseArchive open(File file, String serverURL) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        MappedByteBuffer buffer;
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("The response archive " + file.getAbsolutePath() + " is larger than 2GB.");
+            }
+            // the mapping stays valid after the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            randomAccessFile.close();
+        }
+        try {
+            if (buffer.limit() < 20 || buffer.getInt(0) != MAGIC || buffer.getInt(buffer.limit() - 4) != MAGIC) {
+                throw new IOException("The file " + file.getAbsolutePath() + " is not a complete response archive.");
+            }
+            if (buffer.getInt(4) != VERSION) {
+                throw new IOException("Unsupported response archive version in " + file.getAbsolutePath() + ".");
+            }
+            ByteBuffer view = buffer.duplicate();
+            view.position((int) buffer.getLong(buffer.limit() - 12));
+            int count = view.getInt();
+            Map<String, Integer> index = new HashMap<String, Integer>(count * 2);
+            for (int i = 0; i < count; i++) {
+                String key = readString(view);
+                index.put(key, (int) view.getLong());
+            }
+            return new ResponseArchive(file, buffer, index, serverURL);
+        } catch (RuntimeException e) {
+            throw new IOException("The response archive " + file.getAbsolutePath() + " is corrupt: " + e);
+        }
+    }
+
+    /**
+     * Returns the archive file.
+     *
+     * @return the archive file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the number of responses in the archive.
+     *
+     * @return the number of responses
+     */
+    public int getResponses() {
+        return index.size();
+    }
+
+    /**
+     * Returns the response recorded for the {@code url}.
+     *
+     * @param url the URL
+     * @return the response, or {@code null} if no response was recorded for the URL
+     */
+    public Response get(String url) {
+        Integer position = index.get(key(url, serverURL));
+        if (position == null) {
+            return null;
+        }
+        ByteBuffer view = buffer.duplicate();
+        view.position(position);
+        readString(view);
+        int statusCode = view.getInt();
+        String charset = readString(view);
+        Header[] headers = new Header[view.getInt()];
+        for (int i = 0; i < headers.length; i++) {
+            headers[i] = new Header(readString(view), readString(view));
+        }
+        int length = view.getInt();
+        view.limit(view.position() + length);
+        return new Response(statusCode, charset, headers, view.slice());
+    }
+
+    /**
+     * Returns the key of the responses recorded for the {@code url}: the {@code url} relative to the {@code serverURL} or, if the
+     * {@code url} is not under the {@code serverURL}, its path and query.
+     */
+    static String key(String url, String serverURL) {
+        if (serverURL != null) {
+            String base = serverURL.endsWith("/") ? serverURL.substring(0, serverURL.length() - 1) : serverURL;
+            if (url.startsWith(base + "/")) {
+                return url.substring(base.length());
+            }
+        }
+        try {
+            URI uri = new URI(url, true);
+            String path = uri.getEscapedPath();
+            String query = uri.getEscapedQuery();
+            return (path == null ? "/" : path) + (query == null ? "" : "?" + query);
+        } catch (URIException e) {
+            throw new IllegalArgumentException("Invalid URL " + url, e);
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, CHARSET);
+    }
+
+    /**
+     * A recorded response.
+     */
+    public static final class Response {
+
+        private final int statusCode;
+        private final String charset;
+        private final Header[] headers;
+        private final ByteBuffer body;
+
+        Response(int statusCode, String charset, Header[] headers, ByteBuffer body) {
+            this.statusCode = statusCode;
+            this.charset = charset;
+            this.headers = headers;
+            this.body = body;
+        }
+
+        public int getStatusCode() {
+            return statusCode;
+        }
+
+        public String getCharset() {
+            return charset;
+        }
+
+        public Header[] getHeaders() {
+            return headers.clone();
+        }
+
+        /**
+         * Returns the content encoding of the recorded body.
+         *
+         * @return the value of the {@code Content-Encoding} header, or {@code null} if the body is not encoded
+         */
+        public String getContentEncoding() {
+            for (Header header : headers) {
+                if ("Content-Encoding".equalsIgnoreCase(header.getName())) {
+                    return header.getValue();
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Returns the size of the response body.
+         *
+         * @return the size in bytes
+         */
+        public int getBodySize() {
+            return body.remaining();
+        }
+
+        /**
+         * Opens a stream reading the response body from the archive.
+         *
+         * @return the body stream
+         */
+        public InputStream openBody() {
+            final ByteBuffer view = body.duplicate();
+            return new InputStream() {
+                @Override
+                public int read() {
+                    return view.hasRemaining() ? view.get() & 0xff : -1;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    if (len == 0) {
+                        return 0;
+                    }
+                    if (!view.hasRemaining()) {
+                        return -1;
+                    }
+                    int read = Math.min(len, view.remaining());
+                    view.get(b, off, read);
+                    return read;
+                }
+
+                @Override
+                public int available() {
+                    return view.remaining();
+                }
+            };
+        }
+    }
+}
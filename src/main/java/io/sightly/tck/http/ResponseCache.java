@@ -0,0 +1,335 @@
+/*******************************************************************************
+ * Copyright 2014 Adobe Systems Incorporated
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package io.sightly.tck.http;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Persistent cache of HTTP responses, stored as one file per response in a folder, which allows a {@link Client} to revalidate the
+ * responses it fetched in a previous run with conditional requests. Only responses carrying an {@code ETag} or a {@code Last-Modified}
+ * header are cached. Entries are keyed by URL and by the user the request was authenticated with; when the cached entries exceed the
+ * cache's maximum size, the least recently used ones are evicted.
+ * <p>
+ * Instances are thread-safe and can be shared by several clients, but a cache folder should not be used by several processes at the same
+ * time.
+ */
+public class ResponseCache {
+
+    /**
+     * The default maximum size of the cached entries, in bytes.
+     */
+    public static final long DEFAULT_MAX_SIZE = 64L * 1024 * 1024;
+
+    private static final String EXTENSION = ".response";
+    private static final int MAGIC = 0x48544c43;
+    private static final int VERSION = 2;
+
+    private final File folder;
+    private final long maxSize;
+    /**
+     * The sizes of the cached entries, in access order.
+     */
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<String, Long>(16, 0.75f, true);
+    private long size;
+
+    /**
+     * Opens the cache stored in {@code folder}, creating the folder if needed. If the cached entries exceed {@code maxSize}, the least
+     * recently used ones are evicted.
+     *
+     * @param folder  the cache folder
+     * @param maxSize the maximum size of the cached entries, in bytes
+     * @throws IOException if the folder cannot be created
+     */
+    public ResponseCache(File folder, long maxSize) throws IOException {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("The maximum size of the cache has to be a positive number.");
+        }
+        if (!folder.isDirectory() && !folder.mkdirs()) {
+            throw new IOException("Unable to create the cache folder " + folder.getAbsolutePath() + ".");
+        }
+        this.folder = folder;
+        this.maxSize = maxSize;
+        File[] files = folder.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(EXTENSION);
+            }
+        });
+        if (files != null) {
+            Arrays.sort(files, new Comparator<File>() {
+                @Override
+                public int compare(File f1, File f2) {
+                    long m1 = f1.lastModified();
+                    long m2 = f2.lastModified();
+                    return m1 < m2 ? -1 : (m1 == m2 ? 0 : 1);
+                }
+            });
+            for (File file : files) {
+                String name = file.getName();
+                entries.put(name.substring(0, name.length() - EXTENSION.length()), file.length());
+                size += file.length();
+            }
+        }
+        synchronized (this) {
+            evict();
+        }
+    }
+
+    /**
+     * Returns the response cached for the {@code url}.
+     *
+     * @param url  the URL
+     * @param user the user the request is authenticated with, or {@code null}
+     * @return the cached response, or {@code null} if no response is cached
+     */
+    public Entry get(String url, String user) {
+        String key = key(url, user);
+        File file;
+        synchronized (this) {
+            if (entries.get(key) == null) {
+                return null;
+            }
+            file = file(key);
+        }
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION || !url.equals(in.readUTF()) || !matches(in, user)) {
+                    return null;
+                }
+                int statusCode = in.readShort();
+                String etag = readString(in);
+                String lastModified = readString(in);
+                String charset = in.readUTF();
+                String contentEncoding = readString(in);
+                byte[] body = new byte[in.readInt()];
+                in.readFully(body);
+                file.setLastModified(System.currentTimeMillis());
+                return new Entry(statusCode, etag, lastModified, charset, contentEncoding, body);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            // the entry was evicted concurrently or is corrupt
+            remove(key);
+            return null;
+        }
+    }
+
+    /**
+     * Caches a response for the {@code url}, replacing any response previously cached for it. Responses larger than the cache are not
+     * cached.
+     *
+     * @param url   the URL
+     * @param user  the user the request was authenticated with, or {@code null}
+     * @param entry the response
+     * @throws IOException if the response cannot be written
+     */
+    public void put(String url, String user, Entry entry) throws IOException {
+        if (entry.getBody().length > maxSize) {
+            return;
+        }
+        String key = key(url, user);
+        File temp = File.createTempFile(key, ".tmp", folder);
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(url);
+                writeString(out, user);
+                out.writeShort(entry.getStatusCode());
+                writeString(out, entry.getETag());
+                writeString(out, entry.getLastModified());
+                out.writeUTF(entry.getCharset());
+                writeString(out, entry.getContentEncoding());
+                out.writeInt(entry.getBody().length);
+                out.write(entry.getBody());
+            } finally {
+                out.close();
+            }
+            synchronized (this) {
+                File file = file(key);
+                if (!temp.renameTo(file) && !(file.delete() && temp.renameTo(file))) {
+                    throw new IOException("Unable to write the cache entry " + file.getAbsolutePath() + ".");
+                }
+                Long previous = entries.put(key, file.length());
+                size += file.length() - (previous == null ? 0 : previous);
+                evict();
+            }
+        } finally {
+            if (temp.exists() && !temp.delete()) {
+                temp.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * Returns the maximum size of the cached entries.
+     *
+     * @return the maximum size in bytes
+     */
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns the size of the cached entries.
+     *
+     * @return the size in bytes
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the number of cached entries.
+     *
+     * @return the number of entries
+     */
+    public synchronized int getEntries() {
+        return entries.size();
+    }
+
+    private synchronized void remove(String key) {
+        Long removed = entries.remove(key);
+        if (removed != null) {
+            size -= removed;
+            file(key).delete();
+        }
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        while (size > maxSize && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            iterator.remove();
+            size -= eldest.getValue();
+            file(eldest.getKey()).delete();
+        }
+    }
+
+    private File file(String key) {
+        return new File(folder, key + EXTENSION);
+    }
+
+    private static String key(String url, String user) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            if (user != null) {
+                digest.update(user.getBytes("UTF-8"));
+            }
+            digest.update((byte) 0);
+            byte[] hash = digest.digest(url.getBytes("UTF-8"));
+            StringBuilder key = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                key.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("The SHA-1 algorithm is not available.", e);
+        } catch (IOException e) {
+            throw new IllegalStateException("The UTF-8 charset is not available.", e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static boolean matches(DataInputStream in, String expected) throws IOException {
+        String value = readString(in);
+        return expected == null ? value == null : expected.equals(value);
+    }
+
+    /**
+     * A cached response.
+     */
+    public static final class Entry {
+
+        private final int statusCode;
+        private final String etag;
+        private final String lastModified;
+        private final String charset;
+        private final String contentEncoding;
+        private final byte[] body;
+
+        /**
+         * Creates a cached response.
+         *
+         * @param statusCode      the response's status code
+         * @param etag            the response's {@code ETag} header, or {@code null}
+         * @param lastModified    the response's {@code Last-Modified} header, or {@code null}
+         * @param charset         the charset of the response body
+         * @param contentEncoding the content encoding of the response body, or {@code null}
+         * @param body            the response body, as received
+         */
+        public Entry(int statusCode, String etag, String lastModified, String charset, String contentEncoding, byte[] body) {
+            this.statusCode = statusCode;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.charset = charset;
+            this.contentEncoding = contentEncoding;
+            this.body = body;
+        }
+
+        public int getStatusCode() {
+            return statusCode;
+        }
+
+        public String getETag() {
+            return etag;
+        }
+
+        public String getLastModified() {
+            return lastModified;
+        }
+
+        public String getCharset() {
+            return charset;
+        }
+
+        public String getContentEncoding() {
+            return contentEncoding;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/*******************************************************************************
+ * Copyright 2014 Adobe Systems Incorporated
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package io.sightly.tck.http;
+
+/**
+ * Callback notified by the {@link Client} when an asynchronous request completes.
+ *
+ * @param <T> the type of the response content
+ */
+public interface ResponseCallback<T> {
+
+    /**
+     * Called when the request completed successfully.
+     *
+     * @param content the response content
+     */
+    void completed(T content);
+
+    /**
+     * Called when the request failed.
+     *
+     * @param e the failure cause; usually a {@link ClientException}
+     */
+    void failed(RuntimeException e);
+
+}
@@ -0,0 +1,38 @@
+/*******************************************************************************
+ * Copyright 2014 Adobe Systems Incorporated
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package io.sightly.tck.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Consumes the body of a response received by the {@link Client}, while the connection is still open.
+ *
+ * @param <T> the type of the content produced from the response body
+ */
+public interface ResponseHandler<T> {
+
+    /**
+     * Reads the response {@code body}. The stream is closed by the {@link Client} after this method returns.
+     *
+     * @param body    the response body
+     * @param charset the character set of the response body, as declared by the server, or {@code UTF-8} if none was declared
+     * @return the content produced from the response body
+     * @throws IOException if the body cannot be read
+     */
+    T handle(InputStream body, String charset) throws IOException;
+
+}
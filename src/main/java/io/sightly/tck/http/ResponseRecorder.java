@@ -0,0 +1,163 @@
+/*******************************************************************************
+ * Copyright 2014 Adobe Systems Incorporated
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package io.sightly.tck.http;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.httpclient.Header;
+
+/**
+ * Records HTTP responses into a {@link ResponseArchive} file. Responses are appended to the file as they are recorded and the archive's
+ * index is written when the recorder is closed; only the first response recorded for a URL is kept. Instances are thread-safe.
+ */
+public class ResponseRecorder implements Closeable {
+
+    private final File file;
+    private final String serverURL;
+    private final DataOutputStream out;
+    private final Map<String, Long> index = new LinkedHashMap<String, Long>();
+    private long position;
+    private boolean closed;
+
+    private ResponseRecorder(File file, String serverURL) throws IOException {
+        this.file = file;
+        this.serverURL = serverURL;
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        out.writeInt(ResponseArchive.MAGIC);
+        out.writeInt(ResponseArchive.VERSION);
+        position = out.size();
+    }
+
+    /**
+     * Creates a recorder writing to {@code file}, replacing any existing file. The responses are recorded under the path and query of
+     * their URL.
+     *
+     * @param file the archive file
+     * @return the recorder
+     * @throws IOException if the file cannot be created
+     */
+    public static ResponseRecorder create(File file) throws IOException {
+        return create(file, null);
+    }
+
+    /**
+     * Creates a recorder writing to {@code file}, replacing any existing file. The responses are recorded under their URL relative to
+     * the {@code serverURL}.
+     *
+     * @param file      the archive file
+     * @param serverURL the URL of the server whose responses are recorded; {@code null} records the responses under the path and query
+     *                  of their URL
+     * @return the recorder
+     * @throws IOException if the file cannot be created
+     */
+    public static ResponseRecorder create(File file, String serverURL) throws IOException {
+        File folder = file.getAbsoluteFile().getParentFile();
+        if (!folder.isDirectory() && !folder.mkdirs()) {
+            throw new IOException("Unable to create folder " + folder.getAbsolutePath() + ".");
+        }
+        return new ResponseRecorder(file, serverURL);
+    }
+
+    /**
+     * Returns the archive file.
+     *
+     * @return the archive file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Records a response, unless a response was already recorded for the same URL.
+     *
+     * @param url        the URL of the request
+     * @param statusCode the response's status code
+     * @param charset    the charset of the response body
+     * @param headers    the response's headers
+     * @param body       the response body
+     * @throws IOException if the response cannot be written
+     */
+    public synchronized void record(String url, int statusCode, String charset, Header[] headers, byte[] body) throws IOException {
+        if (closed) {
+            throw new IOException("The recorder is closed.");
+        }
+        String key = ResponseArchive.key(url, serverURL);
+        if (index.containsKey(key)) {
+            return;
+        }
+        long start = position;
+        writeString(key);
+        out.writeInt(statusCode);
+        writeString(charset);
+        out.writeInt(headers.length);
+        for (Header header : headers) {
+            writeString(header.getName());
+            writeString(header.getValue());
+        }
+        out.writeInt(body.length);
+        out.write(body);
+        position += 12 + body.length;
+        index.put(key, start);
+    }
+
+    /**
+     * Returns the number of recorded responses.
+     *
+     * @return the number of responses
+     */
+    public synchronized int getResponses() {
+        return index.size();
+    }
+
+    /**
+     * Writes the archive's index and closes the file. Closing a recorder more than once has no effect.
+     *
+     * @throws IOException if the index cannot be written
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            long indexPosition = position;
+            out.writeInt(index.size());
+            for (Map.Entry<String, Long> entry : index.entrySet()) {
+                writeString(entry.getKey());
+                out.writeLong(entry.getValue());
+            }
+            out.writeLong(indexPosition);
+            out.writeInt(ResponseArchive.MAGIC);
+        } finally {
+            out.close();
+        }
+    }
+
+    private void writeString(String value) throws IOException {
+        byte[] bytes = value.getBytes(ResponseArchive.CHARSET);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+        position += 4 + bytes.length;
+    }
+}
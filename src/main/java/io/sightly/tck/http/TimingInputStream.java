@@ -0,0 +1,96 @@
+/*******************************************************************************
+ * Copyright 2014 Adobe Systems Incorporated
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package io.sightly.tck.http;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream which measures the time spent waiting for the wrapped stream's data and counts the bytes read from it.
+ */
+public class TimingInputStream extends FilterInputStream {
+
+    private long nanos;
+    private long bytes;
+
+    /**
+     * Creates a timing stream.
+     *
+     * @param in the wrapped stream
+     */
+    public TimingInputStream(InputStream in) {
+        super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+        long start = System.nanoTime();
+        try {
+            int b = super.read();
+            if (b != -1) {
+                bytes++;
+            }
+            return b;
+        } finally {
+            nanos += System.nanoTime() - start;
+        }
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        long start = System.nanoTime();
+        try {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                bytes += read;
+            }
+            return read;
+        } finally {
+            nanos += System.nanoTime() - start;
+        }
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long start = System.nanoTime();
+        try {
+            long skipped = super.skip(n);
+            bytes += skipped;
+            return skipped;
+        } finally {
+            nanos += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Returns the time spent reading from the wrapped stream.
+     *
+     * @return the time, in nanoseconds
+     */
+    public long getNanos() {
+        return nanos;
+    }
+
+    /**
+     * Returns the number of bytes read or skipped from the wrapped stream.
+     *
+     * @return the number of bytes
+     */
+    public long getBytes() {
+        return bytes;
+    }
+}
@@ -0,0 +1,82 @@
+/*******************************************************************************
+ * Copyright 2014 Adobe Systems Incorporated
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package io.sightly.tck.http;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+
+import org.apache.commons.httpclient.params.HttpConnectionParams;
+import org.apache.commons.httpclient.protocol.DefaultProtocolSocketFactory;
+import org.apache.commons.httpclient.protocol.ProtocolSocketFactory;
+
+/**
+ * Plain socket factory which measures the time spent opening connections on the calling thread.
+ */
+class TimingSocketFactory implements ProtocolSocketFactory {
+
+    private static final ThreadLocal<long[]> CONNECT_NANOS = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[1];
+        }
+    };
+
+    private final ProtocolSocketFactory delegate = new DefaultProtocolSocketFactory();
+
+    /**
+     * Returns the time the calling thread spent opening connections since the last call, and resets it.
+     *
+     * @return the time, in nanoseconds
+     */
+    static long takeConnectTime() {
+        long[] nanos = CONNECT_NANOS.get();
+        long connectTime = nanos[0];
+        nanos[0] = 0;
+        return connectTime;
+    }
+
+    @Override
+    public Socket createSocket(String host, int port, InetAddress localAddress, int localPort) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return delegate.createSocket(host, port, localAddress, localPort);
+        } finally {
+            CONNECT_NANOS.get()[0] += System.nanoTime() - start;
+        }
+    }
+
+    @Override
+    public Socket createSocket(String host, int port, InetAddress localAddress, int localPort, HttpConnectionParams params)
+            throws IOException {
+        long start = System.nanoTime();
+        try {
+            return delegate.createSocket(host, port, localAddress, localPort, params);
+        } finally {
+            CONNECT_NANOS.get()[0] += System.nanoTime() - start;
+        }
+    }
+
+    @Override
+    public Socket createSocket(String host, int port) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return delegate.createSocket(host, port);
+        } finally {
+            CONNECT_NANOS.get()[0] += System.nanoTime() - start;
+        }
+    }
+}
@@ -0,0 +1,361 @@
+/*******************************************************************************
+ * Copyright 2014 Adobe Systems Incorporated
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package io.sightly.tck.metrics;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Collects the durations of the phases of a test run, per {@link Phase}, per URL and per test case, together with the size of the
+ * responses, and exports them as JSON and in the Prometheus text exposition format.
+ */
+public final class Metrics {
+
+    /**
+     * The name of the exported JSON file.
+     */
+    public static final String JSON_FILE = "tck-metrics.json";
+
+    /**
+     * The name of the exported Prometheus text exposition file.
+     */
+    public static final String PROMETHEUS_FILE = "tck-metrics.prom";
+
+    private static final double NANOS_PER_SECOND = 1000000000d;
+    private static final double NANOS_PER_MILLISECOND = 1000000d;
+
+    private static final Map<Phase, Histogram> phases = new EnumMap<Phase, Histogram>(Phase.class);
+    private static final ConcurrentMap<String, Histogram> methods = new ConcurrentHashMap<String, Histogram>();
+    private static final ConcurrentMap<String, UrlTimings> urls = new ConcurrentHashMap<String, UrlTimings>();
+    private static final Queue<CaseTiming> cases = new ConcurrentLinkedQueue<CaseTiming>();
+    private static final AtomicLong wireBytes = new AtomicLong();
+    private static final AtomicLong decodedBytes = new AtomicLong();
+
+    static {
+        for (Phase phase : Phase.values()) {
+            phases.put(phase, new Histogram());
+        }
+    }
+
+    private Metrics() {
+    }
+
+    /**
+     * Records the duration of a phase of processing {@code url}.
+     *
+     * @param phase the phase
+     * @param url   the URL
+     * @param nanos the duration, in nanoseconds
+     */
+    public static void record(Phase phase, String url, long nanos) {
+        phases.get(phase).record(nanos);
+        getUrlTimings(url).add(phase, nanos);
+    }
+
+    /**
+     * Records the duration of a test case's evaluation.
+     *
+     * @param name   the test case's name
+     * @param url    the URL whose content was checked
+     * @param method the test case's assertion method
+     * @param nanos  the duration, in nanoseconds
+     */
+    public static void recordCase(String name, String url, String method, long nanos) {
+        record(Phase.EVALUATION, url, nanos);
+        getUrlTimings(url).cases.incrementAndGet();
+        Histogram histogram = methods.get(method);
+        if (histogram == null) {
+            Histogram newHistogram = new Histogram();
+            histogram = methods.putIfAbsent(method, newHistogram);
+            if (histogram == null) {
+                histogram = newHistogram;
+            }
+        }
+        histogram.record(nanos);
+        cases.add(new CaseTiming(name, url, method, nanos));
+    }
+
+    /**
+     * Records the size of the response received for {@code url}, as transferred and after decoding its content encoding.
+     *
+     * @param url     the URL
+     * @param wire    the number of bytes received
+     * @param decoded the number of bytes after decoding; equal to {@code wire} for responses without a content encoding
+     */
+    public static void recordBytes(String url, long wire, long decoded) {
+        wireBytes.addAndGet(wire);
+        decodedBytes.addAndGet(decoded);
+        UrlTimings timings = getUrlTimings(url);
+        timings.wireBytes.addAndGet(wire);
+        timings.decodedBytes.addAndGet(decoded);
+    }
+
+    /**
+     * Returns the number of response body bytes received.
+     *
+     * @return the number of bytes
+     */
+    public static long getWireBytes() {
+        return wireBytes.get();
+    }
+
+    /**
+     * Returns the number of response body bytes after decoding their content encoding.
+     *
+     * @return the number of bytes
+     */
+    public static long getDecodedBytes() {
+        return decodedBytes.get();
+    }
+
+    /**
+     * Returns the histogram of a phase's durations.
+     *
+     * @param phase the phase
+     * @return the histogram
+     */
+    public static Histogram getHistogram(Phase phase) {
+        return phases.get(phase);
+    }
+
+    /**
+     * Discards all the recorded durations.
+     */
+    public static void reset() {
+        for (Histogram histogram : phases.values()) {
+            histogram.reset();
+        }
+        methods.clear();
+        urls.clear();
+        cases.clear();
+        wireBytes.set(0);
+        decodedBytes.set(0);
+    }
+
+    /**
+     * Writes the recorded metrics to {@code folder}, as {@link #JSON_FILE} and {@link #PROMETHEUS_FILE}.
+     *
+     * @param folder the folder, which is created if it doesn't exist
+     * @throws IOException if the files cannot be written
+     */
+    public static void export(File folder) throws IOException {
+        if (!folder.isDirectory() && !folder.mkdirs()) {
+            throw new IOException("Unable to create folder " + folder.getAbsolutePath() + ".");
+        }
+        Writer json = new OutputStreamWriter(new FileOutputStream(new File(folder, JSON_FILE)), "UTF-8");
+        try {
+            json.write(toJSON().toString(2));
+        } finally {
+            json.close();
+        }
+        Writer prometheus = new OutputStreamWriter(new FileOutputStream(new File(folder, PROMETHEUS_FILE)), "UTF-8");
+        try {
+            writePrometheus(prometheus);
+        } finally {
+            prometheus.close();
+        }
+    }
+
+    /**
+     * Returns the recorded metrics as JSON; durations are expressed in milliseconds.
+     *
+     * @return the metrics
+     */
+    public static JSONObject toJSON() {
+        JSONObject json = new JSONObject();
+        JSONObject phasesJSON = new JSONObject();
+        for (Map.Entry<Phase, Histogram> entry : phases.entrySet()) {
+            phasesJSON.put(entry.getKey().getLabel(), toJSON(entry.getValue()));
+        }
+        json.put("phases", phasesJSON);
+        JSONObject methodsJSON = new JSONObject();
+        for (Map.Entry<String, Histogram> entry : new TreeMap<String, Histogram>(methods).entrySet()) {
+            methodsJSON.put(entry.getKey(), toJSON(entry.getValue()));
+        }
+        json.put("methods", methodsJSON);
+        JSONObject bytesJSON = new JSONObject();
+        bytesJSON.put("wire", wireBytes.get());
+        bytesJSON.put("decoded", decodedBytes.get());
+        json.put("bytes", bytesJSON);
+        JSONObject urlsJSON = new JSONObject();
+        for (Map.Entry<String, UrlTimings> entry : new TreeMap<String, UrlTimings>(urls).entrySet()) {
+            UrlTimings timings = entry.getValue();
+            JSONObject urlJSON = new JSONObject();
+            for (Phase phase : Phase.values()) {
+                urlJSON.put(phase.getLabel(), millis(timings.get(phase)));
+            }
+            urlJSON.put("cases", timings.cases.get());
+            urlJSON.put("wireBytes", timings.wireBytes.get());
+            urlJSON.put("decodedBytes", timings.decodedBytes.get());
+            urlsJSON.put(entry.getKey(), urlJSON);
+        }
+        json.put("urls", urlsJSON);
+        JSONArray casesJSON = new JSONArray();
+        for (CaseTiming caseTiming : cases) {
+            JSONObject caseJSON = new JSONObject();
+            caseJSON.put("name", caseTiming.name);
+            caseJSON.put("url", caseTiming.url);
+            caseJSON.put("method", caseTiming.method);
+            caseJSON.put(Phase.EVALUATION.getLabel(), millis(caseTiming.nanos));
+            casesJSON.put(caseJSON);
+        }
+        json.put("cases", casesJSON);
+        return json;
+    }
+
+    /**
+     * Writes the recorded metrics in the Prometheus text exposition format; durations are expressed in seconds.
+     *
+     * @param writer the writer
+     * @throws IOException if the metrics cannot be written
+     */
+    public static void writePrometheus(Writer writer) throws IOException {
+        writer.write("# HELP tck_phase_seconds Duration of the phases of the TCK run.\n");
+        writer.write("# TYPE tck_phase_seconds histogram\n");
+        for (Map.Entry<Phase, Histogram> entry : phases.entrySet()) {
+            writeHistogram(writer, "tck_phase_seconds", "phase", entry.getKey().getLabel(), entry.getValue());
+        }
+        writer.write("# HELP tck_evaluation_seconds Duration of the test cases' evaluation, per assertion method.\n");
+        writer.write("# TYPE tck_evaluation_seconds histogram\n");
+        for (Map.Entry<String, Histogram> entry : new TreeMap<String, Histogram>(methods).entrySet()) {
+            writeHistogram(writer, "tck_evaluation_seconds", "method", entry.getKey(), entry.getValue());
+        }
+        writer.write("# HELP tck_response_bytes_total Size of the received response bodies, as transferred and after decoding.\n");
+        writer.write("# TYPE tck_response_bytes_total counter\n");
+        writer.write("tck_response_bytes_total{encoding=\"wire\"} " + wireBytes.get() + "\n");
+        writer.write("tck_response_bytes_total{encoding=\"decoded\"} " + decodedBytes.get() + "\n");
+        writer.write("# HELP tck_url_phase_seconds Total duration of the phases of the TCK run, per URL.\n");
+        writer.write("# TYPE tck_url_phase_seconds gauge\n");
+        for (Map.Entry<String, UrlTimings> entry : new TreeMap<String, UrlTimings>(urls).entrySet()) {
+            for (Phase phase : Phase.values()) {
+                writer.write("tck_url_phase_seconds{url=\"" + escape(entry.getKey()) + "\",phase=\"" + phase.getLabel() + "\"} " +
+                        seconds(entry.getValue().get(phase)) + "\n");
+            }
+        }
+        writer.flush();
+    }
+
+    private static void writeHistogram(Writer writer, String name, String label, String value, Histogram histogram)
+            throws IOException {
+        String labels = label + "=\"" + escape(value) + "\"";
+        long[] counts = histogram.getBucketCounts();
+        long cumulative = 0;
+        for (int i = 0; i < Histogram.BOUNDS.length; i++) {
+            cumulative += counts[i];
+            writer.write(name + "_bucket{" + labels + ",le=\"" + bound(i) + "\"} " + cumulative + "\n");
+        }
+        cumulative += counts[Histogram.BOUNDS.length];
+        writer.write(name + "_bucket{" + labels + ",le=\"+Inf\"} " + cumulative + "\n");
+        writer.write(name + "_sum{" + labels + "} " + seconds(histogram.getSum()) + "\n");
+        writer.write(name + "_count{" + labels + "} " + cumulative + "\n");
+    }
+
+    private static JSONObject toJSON(Histogram histogram) {
+        JSONObject json = new JSONObject();
+        json.put("count", histogram.getCount());
+        json.put("sum", millis(histogram.getSum()));
+        json.put("max", millis(histogram.getMax()));
+        json.put("p50", millis(histogram.getPercentile(50)));
+        json.put("p90", millis(histogram.getPercentile(90)));
+        json.put("p99", millis(histogram.getPercentile(99)));
+        JSONArray buckets = new JSONArray();
+        long[] counts = histogram.getBucketCounts();
+        for (int i = 0; i < counts.length; i++) {
+            JSONObject bucket = new JSONObject();
+            bucket.put("le", i < Histogram.BOUNDS.length ? bound(i) : "+Inf");
+            bucket.put("count", counts[i]);
+            buckets.put(bucket);
+        }
+        json.put("buckets", buckets);
+        return json;
+    }
+
+    private static String bound(int bucket) {
+        return BigDecimal.valueOf(Histogram.BOUNDS[bucket]).stripTrailingZeros().toPlainString();
+    }
+
+    private static UrlTimings getUrlTimings(String url) {
+        UrlTimings timings = urls.get(url);
+        if (timings == null) {
+            UrlTimings newTimings = new UrlTimings();
+            timings = urls.putIfAbsent(url, newTimings);
+            if (timings == null) {
+                timings = newTimings;
+            }
+        }
+        return timings;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / NANOS_PER_MILLISECOND;
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / NANOS_PER_SECOND;
+    }
+
+    private static String escape(String labelValue) {
+        return labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static class UrlTimings {
+
+        private final AtomicLongArray nanos = new AtomicLongArray(Phase.values().length);
+        private final AtomicInteger cases = new AtomicInteger();
+        private final AtomicLong wireBytes = new AtomicLong();
+        private final AtomicLong decodedBytes = new AtomicLong();
+
+        void add(Phase phase, long duration) {
+            nanos.addAndGet(phase.ordinal(), duration);
+        }
+
+        long get(Phase phase) {
+            return nanos.get(phase.ordinal());
+        }
+    }
+
+    private static class CaseTiming {
+
+        private final String name;
+        private final String url;
+        private final String method;
+        private final long nanos;
+
+        CaseTiming(String name, String url, String method, long nanos) {
+            this.name = name;
+            this.url = url;
+            this.method = method;
+            this.nanos = nanos;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*******************************************************************************
+ * Copyright 2014 Adobe Systems Incorporated
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package io.sightly.tck.metrics;
+
+/**
+ * The phases of a test run whose durations are recorded by {@link Metrics}.
+ */
+public enum Phase {
+
+    /**
+     * Opening a new connection to the server, including the host name resolution. Requests using pooled connections don't record it.
+     */
+    CONNECT("connect"),
+
+    /**
+     * From sending the request until the response status line and headers are received, excluding the connection time.
+     */
+    TIME_TO_FIRST_BYTE("ttfb"),
+
+    /**
+     * Waiting for the response body to be received.
+     */
+    DOWNLOAD("download"),
+
+    /**
+     * Parsing the response body or the markup into a document, excluding the time spent waiting for its bytes.
+     */
+    PARSE("parse"),
+
+    /**
+     * Matching all the selectors planned for a page in a single traversal of its document; recorded once per page.
+     */
+    BATCH_EVALUATION("batch_evaluation"),
+
+    /**
+     * Evaluating a test case's assertions on the parsed document; recorded once per test case.
+     */
+    EVALUATION("evaluation");
+
+    private final String label;
+
+    Phase(String label) {
+        this.label = label;
+    }
+
+    /**
+     * Returns the label used for this phase in the exported metrics.
+     *
+     * @return the label
+     */
+    public String getLabel() {
+        return label;
+    }
+}
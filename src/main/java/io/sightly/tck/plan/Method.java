@@ -0,0 +1,60 @@
+/*******************************************************************************
+ * Copyright 2014 Adobe Systems Incorporated
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package io.sightly.tck.plan;
+
+/**
+ * The assertion methods which can be used by a test case.
+ */
+public enum Method {
+
+    INNER_HTML_EQUALS("innerHTMLEquals"),
+    CONTAINS("contains"),
+    EXISTS("exists"),
+    HAS_ATTRIBUTE("hasAttribute"),
+    HAS_ATTRIBUTE_VALUE("hasAttributeValue"),
+    HAS_CHILDREN("hasChildren"),
+    HAS_CLOSING_TAG("hasClosingTag");
+
+    private final String name;
+
+    Method(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Returns the name used for this method in the JSON test definitions.
+     *
+     * @return the method's name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the method with the given JSON {@code name}.
+     *
+     * @param name the method's name
+     * @return the method, or {@code null} if there's no method with this name
+     */
+    public static Method forName(String name) {
+        for (Method method : values()) {
+            if (method.name.equals(name)) {
+                return method;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,184 @@
+/*******************************************************************************
+ * Copyright 2014 Adobe Systems Incorporated
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package io.sightly.tck.plan;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang.StringUtils;
+
+import io.sightly.tck.Constants;
+
+/**
+ * Selects the cases of a {@link TestPlan} by their suite, group and case names. Each name is matched against a comma separated list of
+ * case insensitive patterns, in which {@code *} matches any sequence of characters and {@code ?} any single character. Patterns starting
+ * with {@code !} exclude the names they match; a name is selected if it matches none of the exclude patterns and, when there are
+ * include patterns, at least one of them. A case's name is its selector; since selector groups such as {@code div, span} contain
+ * commas, a comma which is part of a pattern is escaped as {@code \,}.
+ */
+public final class PlanFilter {
+
+    /**
+     * A filter selecting all the cases.
+     */
+    public static final PlanFilter ALL = new PlanFilter(Patterns.ANY, Patterns.ANY, Patterns.ANY);
+
+    private final Patterns suites;
+    private final Patterns groups;
+    private final Patterns cases;
+
+    private PlanFilter(Patterns suites, Patterns groups, Patterns cases) {
+        this.suites = suites;
+        this.groups = groups;
+        this.cases = cases;
+    }
+
+    /**
+     * Creates a filter from lists of patterns.
+     *
+     * @param suites the patterns for the suite names, or {@code null} for all the suites
+     * @param groups the patterns for the group names, or {@code null} for all the groups
+     * @param cases  the patterns for the case names, or {@code null} for all the cases
+     * @return the filter
+     */
+    public static PlanFilter create(String suites, String groups, String cases) {
+        if (StringUtils.isBlank(suites) && StringUtils.isBlank(groups) && StringUtils.isBlank(cases)) {
+            return ALL;
+        }
+        return new PlanFilter(Patterns.parse(suites), Patterns.parse(groups), Patterns.parse(cases));
+    }
+
+    /**
+     * Creates a filter from the {@link Constants#SYS_PROP_SUITE}, {@link Constants#SYS_PROP_GROUP} and {@link Constants#SYS_PROP_CASE}
+     * system properties.
+     *
+     * @return the filter
+     */
+    public static PlanFilter fromSystemProperties() {
+        return create(System.getProperty(Constants.SYS_PROP_SUITE), System.getProperty(Constants.SYS_PROP_GROUP),
+                System.getProperty(Constants.SYS_PROP_CASE));
+    }
+
+    /**
+     * Checks if this filter selects all the cases.
+     *
+     * @return {@code true} if no case is filtered out, {@code false} otherwise
+     */
+    public boolean isAll() {
+        return this == ALL;
+    }
+
+    /**
+     * Checks if the {@code testCase} is selected by this filter.
+     *
+     * @param testCase the test case
+     * @return {@code true} if the case is selected, {@code false} otherwise
+     */
+    public boolean accept(PlannedCase testCase) {
+        return suites.matches(testCase.getSuite()) && groups.matches(testCase.getGroup()) && cases.matches(testCase.getSelector());
+    }
+
+    private static final class Patterns {
+
+        private static final Patterns ANY = new Patterns(Collections.<Pattern>emptyList(), Collections.<Pattern>emptyList());
+
+        private final List<Pattern> includes;
+        private final List<Pattern> excludes;
+
+        private Patterns(List<Pattern> includes, List<Pattern> excludes) {
+            this.includes = includes;
+            this.excludes = excludes;
+        }
+
+        static Patterns parse(String patterns) {
+            if (StringUtils.isBlank(patterns)) {
+                return ANY;
+            }
+            List<Pattern> includes = new ArrayList<Pattern>();
+            List<Pattern> excludes = new ArrayList<Pattern>();
+            for (String pattern : split(patterns)) {
+                pattern = pattern.trim();
+                if (pattern.startsWith("!")) {
+                    excludes.add(compile(pattern.substring(1).trim()));
+                } else if (pattern.length() > 0) {
+                    includes.add(compile(pattern));
+                }
+            }
+            return new Patterns(includes, excludes);
+        }
+
+        /**
+         * Splits the comma separated {@code patterns}, keeping the commas escaped as {@code \,} in the patterns.
+         */
+        private static List<String> split(String patterns) {
+            List<String> result = new ArrayList<String>();
+            StringBuilder pattern = new StringBuilder();
+            for (int i = 0; i < patterns.length(); i++) {
+                char c = patterns.charAt(i);
+                if (c == '\\' && i + 1 < patterns.length() && patterns.charAt(i + 1) == ',') {
+                    pattern.append(',');
+                    i++;
+                } else if (c == ',') {
+                    result.add(pattern.toString());
+                    pattern.setLength(0);
+                } else {
+                    pattern.append(c);
+                }
+            }
+            result.add(pattern.toString());
+            return result;
+        }
+
+        private static Pattern compile(String glob) {
+            StringBuilder regex = new StringBuilder();
+            int start = 0;
+            for (int i = 0; i < glob.length(); i++) {
+                char c = glob.charAt(i);
+                if (c == '*' || c == '?') {
+                    if (i > start) {
+                        regex.append(Pattern.quote(glob.substring(start, i)));
+                    }
+                    regex.append(c == '*' ? ".*" : ".");
+                    start = i + 1;
+                }
+            }
+            if (start < glob.length()) {
+                regex.append(Pattern.quote(glob.substring(start)));
+            }
+            return Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE | Pattern.DOTALL);
+        }
+
+        boolean matches(String name) {
+            String value = name == null ? "" : name;
+            for (Pattern exclude : excludes) {
+                if (exclude.matcher(value).matches()) {
+                    return false;
+                }
+            }
+            if (includes.isEmpty()) {
+                return true;
+            }
+            for (Pattern include : includes) {
+                if (include.matcher(value).matches()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
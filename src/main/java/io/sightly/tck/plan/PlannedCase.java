@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright 2014 Adobe Systems Incorporated
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package io.sightly.tck.plan;
+
+/**
+ * A test case from a {@link TestPlan}, with all the values inherited from its group and suite already resolved.
+ */
+public final class PlannedCase {
+
+    private final String suite;
+    private final String group;
+    private final Method method;
+    private final String url;
+    private final String expectedMarkup;
+    private final int expectedStatusCode;
+    private final String selector;
+    private final String value;
+    private final String attribute;
+    private final boolean positive;
+    private final long maxLatencyMs;
+    private final long maxBytes;
+
+    PlannedCase(String suite, String group, Method method, String url, String expectedMarkup, int expectedStatusCode, String selector,
+                String value, String attribute, boolean positive, long maxLatencyMs, long maxBytes) {
+        this.suite = suite;
+        this.group = group;
+        this.method = method;
+        this.url = url;
+        this.expectedMarkup = expectedMarkup;
+        this.expectedStatusCode = expectedStatusCode;
+        this.selector = selector;
+        this.value = value;
+        this.attribute = attribute;
+        this.positive = positive;
+        this.maxLatencyMs = maxLatencyMs;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the name of the suite this case belongs to.
+     *
+     * @return the suite's name
+     */
+    public String getSuite() {
+        return suite;
+    }
+
+    /**
+     * Returns the name of the group this case belongs to.
+     *
+     * @return the group's name
+     */
+    public String getGroup() {
+        return group;
+    }
+
+    /**
+     * Returns the assertion method of this case.
+     *
+     * @return the method
+     */
+    public Method getMethod() {
+        return method;
+    }
+
+    /**
+     * Returns the path of the tested script's URL, relative to the server URL.
+     *
+     * @return the URL path
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * Returns the path of the file containing the expected markup.
+     *
+     * @return the expected markup path, or {@code null} if the definition doesn't provide one
+     */
+    public String getExpectedMarkup() {
+        return expectedMarkup;
+    }
+
+    /**
+     * Returns the status code the server is expected to respond with.
+     *
+     * @return the expected status code
+     */
+    public int getExpectedStatusCode() {
+        return expectedStatusCode;
+    }
+
+    /**
+     * Returns the selector of the element(s) checked by this case.
+     *
+     * @return the selector
+     */
+    public String getSelector() {
+        return selector;
+    }
+
+    /**
+     * Returns the expected value; for {@link Method#HAS_CHILDREN} this is the expected number of children.
+     *
+     * @return the expected value, or {@code null} if the method doesn't use one
+     */
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * Returns the name of the checked attribute.
+     *
+     * @return the attribute's name, or {@code null} if the method doesn't use one
+     */
+    public String getAttribute() {
+        return attribute;
+    }
+
+    /**
+     * Checks if the assertion is positive or negated.
+     *
+     * @return {@code false} if the assertion is negated, {@code true} otherwise
+     */
+    public boolean isPositive() {
+        return positive;
+    }
+
+    /**
+     * Returns the maximum time it may take to fetch the tested script's response, from sending the request until the whole body was
+     * received.
+     *
+     * @return the latency budget in milliseconds, or {@code 0} if the case has no latency budget
+     */
+    public long getMaxLatencyMs() {
+        return maxLatencyMs;
+    }
+
+    /**
+     * Returns the maximum size of the tested script's response body.
+     *
+     * @return the size budget in bytes, or {@code 0} if the case has no size budget
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+}
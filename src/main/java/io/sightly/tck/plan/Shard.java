@@ -0,0 +1,151 @@
+/*******************************************************************************
+ * Copyright 2014 Adobe Systems Incorporated
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package io.sightly.tck.plan;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang.StringUtils;
+
+import io.sightly.tck.Constants;
+
+/**
+ * Selects one of the {@code N} shards of a {@link TestPlan}, so that the plan can be run by {@code N} JVMs in parallel. The plan is
+ * partitioned by URL, therefore each page is fetched and parsed by exactly one shard. The partitioning only depends on the plan: the
+ * URLs are ordered by their number of cases, from the largest, and each of them is assigned to the shard with the fewest cases so
+ * far, which keeps the shards balanced while every JVM computes the same assignment.
+ */
+public final class Shard {
+
+    private final int index;
+    private final int count;
+
+    private Shard(int index, int count) {
+        this.index = index;
+        this.count = count;
+    }
+
+    /**
+     * Creates a shard.
+     *
+     * @param index the shard's index, starting from {@code 1}
+     * @param count the number of shards
+     * @return the shard
+     * @throws IllegalArgumentException if the {@code index} is not between {@code 1} and {@code count}
+     */
+    public static Shard create(int index, int count) {
+        if (count < 1 || index < 1 || index > count) {
+            throw new IllegalArgumentException("Invalid shard " + index + "/" + count + "; expected I/N, with 1 <= I <= N.");
+        }
+        return new Shard(index, count);
+    }
+
+    /**
+     * Parses a shard specification of the form {@code I/N}.
+     *
+     * @param spec the specification
+     * @return the shard
+     * @throws IllegalArgumentException if the specification is malformed
+     */
+    public static Shard parse(String spec) {
+        String[] parts = StringUtils.split(StringUtils.defaultString(spec), '/');
+        if (parts.length == 2) {
+            try {
+                return create(Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim()));
+            } catch (NumberFormatException e) {
+                // handled below
+            }
+        }
+        throw new IllegalArgumentException("Invalid shard " + spec + "; expected I/N, with 1 <= I <= N.");
+    }
+
+    /**
+     * Creates a shard from the {@link Constants#SYS_PROP_SHARD} system property.
+     *
+     * @return the shard, or {@code null} if the property is not set
+     * @throws IllegalArgumentException if the property's value is malformed
+     */
+    public static Shard fromSystemProperties() {
+        String spec = System.getProperty(Constants.SYS_PROP_SHARD);
+        return StringUtils.isBlank(spec) ? null : parse(spec);
+    }
+
+    /**
+     * Returns this shard's index.
+     *
+     * @return the index, starting from {@code 1}
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Returns the number of shards.
+     *
+     * @return the number of shards
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the URLs of the {@code plan} assigned to this shard.
+     *
+     * @param plan the test plan
+     * @return the URLs, as defined by the plan's cases
+     */
+    public Set<String> getUrls(TestPlan plan) {
+        final Map<String, Integer> cases = new LinkedHashMap<String, Integer>();
+        for (PlannedCase testCase : plan.getCases()) {
+            Integer urlCases = cases.get(testCase.getUrl());
+            cases.put(testCase.getUrl(), urlCases == null ? 1 : urlCases + 1);
+        }
+        List<String> urls = new ArrayList<String>(cases.keySet());
+        // stable sort, so the URLs with the same number of cases stay in the plan's order
+        Collections.sort(urls, new Comparator<String>() {
+            @Override
+            public int compare(String a, String b) {
+                return cases.get(b).compareTo(cases.get(a));
+            }
+        });
+        int[] load = new int[count];
+        Set<String> selected = new HashSet<String>();
+        for (String url : urls) {
+            int shard = 0;
+            for (int i = 1; i < count; i++) {
+                if (load[i] < load[shard]) {
+                    shard = i;
+                }
+            }
+            load[shard] += cases.get(url);
+            if (shard == index - 1) {
+                selected.add(url);
+            }
+        }
+        return selected;
+    }
+
+    @Override
+    public String toString() {
+        return index + "/" + count;
+    }
+}
@@ -0,0 +1,383 @@
+/*******************************************************************************
+ * Copyright 2014 Adobe Systems Incorporated
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package io.sightly.tck.plan;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang.StringUtils;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import static io.sightly.tck.tests.TestBuilder.JSON_CASE_ATTRIBUTE;
+import static io.sightly.tck.tests.TestBuilder.JSON_CASE_POSITIVE;
+import static io.sightly.tck.tests.TestBuilder.JSON_CASE_SELECTOR;
+import static io.sightly.tck.tests.TestBuilder.JSON_CASE_VALUE;
+import static io.sightly.tck.tests.TestBuilder.JSON_EXPECTED_MARKUP;
+import static io.sightly.tck.tests.TestBuilder.JSON_EXPECTED_STATUS_CODE;
+import static io.sightly.tck.tests.TestBuilder.JSON_GROUPS;
+import static io.sightly.tck.tests.TestBuilder.JSON_GROUP_CASES;
+import static io.sightly.tck.tests.TestBuilder.JSON_GROUP_NAME;
+import static io.sightly.tck.tests.TestBuilder.JSON_MAX_BYTES;
+import static io.sightly.tck.tests.TestBuilder.JSON_MAX_LATENCY_MS;
+import static io.sightly.tck.tests.TestBuilder.JSON_METHOD;
+import static io.sightly.tck.tests.TestBuilder.JSON_SUITE;
+import static io.sightly.tck.tests.TestBuilder.JSON_URL;
+
+/**
+ * A {@code TestPlan} is the validated list of test cases described by the JSON test definitions, with the suite and group level
+ * values already inherited by each case. The build compiles the embedded definitions into a binary plan (see {@link TestPlanCompiler})
+ * which is packaged as the {@link #RESOURCE} class path resource, so that the runtime doesn't have to parse any JSON.
+ */
+public final class TestPlan {
+
+    /**
+     * The name of the class path resource, relative to this class, containing the compiled plan of the embedded test definitions.
+     */
+    public static final String RESOURCE = "testplan.bin";
+
+    private static final int MAGIC = 0x48544c50;
+    private static final int VERSION = 3;
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+    private static final int DEFAULT_STATUS_CODE = 200;
+
+    private final List<PlannedCase> cases;
+
+    private TestPlan(List<PlannedCase> cases) {
+        this.cases = Collections.unmodifiableList(cases);
+    }
+
+    /**
+     * Returns the planned test cases, in the order of their definitions.
+     *
+     * @return the test cases
+     */
+    public List<PlannedCase> getCases() {
+        return cases;
+    }
+
+    /**
+     * Returns the plan made of the cases selected by the {@code filter}.
+     *
+     * @param filter the filter
+     * @return the filtered plan, or this plan if the {@code filter} selects all the cases
+     */
+    public TestPlan filter(PlanFilter filter) {
+        if (filter.isAll()) {
+            return this;
+        }
+        List<PlannedCase> selected = new ArrayList<PlannedCase>();
+        for (PlannedCase testCase : cases) {
+            if (filter.accept(testCase)) {
+                selected.add(testCase);
+            }
+        }
+        return new TestPlan(selected);
+    }
+
+    /**
+     * Compiles JSON test definitions into a test plan.
+     *
+     * @param definitions the test definitions
+     * @return the test plan
+     * @throws IllegalArgumentException if a definition is malformed
+     */
+    public static TestPlan compile(List<JSONObject> definitions) {
+        List<PlannedCase> cases = new ArrayList<PlannedCase>();
+        for (JSONObject definition : definitions) {
+            compile(definition, cases);
+        }
+        return new TestPlan(cases);
+    }
+
+    static TestPlan of(List<PlannedCase> cases) {
+        return new TestPlan(new ArrayList<PlannedCase>(cases));
+    }
+
+    /**
+     * Loads the test plan packaged with the TCK.
+     *
+     * @return the test plan, or {@code null} if no compiled plan is available
+     * @throws IOException if the packaged plan cannot be read
+     */
+    public static TestPlan load() throws IOException {
+        InputStream in = TestPlan.class.getResourceAsStream(RESOURCE);
+        if (in == null) {
+            return null;
+        }
+        try {
+            return read(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Reads a test plan written by {@link #write(OutputStream)}.
+     *
+     * @param in the stream to read from
+     * @return the test plan
+     * @throws IOException if the plan cannot be read or if it was written by an incompatible version
+     */
+    public static TestPlan read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a test plan.");
+        }
+        int version = data.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported test plan version " + version + ".");
+        }
+        String[] strings = new String[data.readInt()];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = readUTF8(data);
+        }
+        Method[] methods = Method.values();
+        int size = data.readInt();
+        List<PlannedCase> cases = new ArrayList<PlannedCase>(size);
+        for (int i = 0; i < size; i++) {
+            String suite = readString(data, strings);
+            String group = readString(data, strings);
+            int ordinal = data.readUnsignedByte();
+            if (ordinal >= methods.length) {
+                throw new IOException("Corrupted test plan.");
+            }
+            Method method = methods[ordinal];
+            String url = readString(data, strings);
+            String expectedMarkup = readString(data, strings);
+            int expectedStatusCode = data.readUnsignedShort();
+            String selector = readString(data, strings);
+            String value = readString(data, strings);
+            String attribute = readString(data, strings);
+            boolean positive = data.readBoolean();
+            long maxLatencyMs = data.readLong();
+            long maxBytes = data.readLong();
+            cases.add(new PlannedCase(suite, group, method, url, expectedMarkup, expectedStatusCode, selector, value, attribute,
+                    positive, maxLatencyMs, maxBytes));
+        }
+        return new TestPlan(cases);
+    }
+
+    /**
+     * Writes this plan in a compact binary form, where each distinct string is stored only once.
+     *
+     * @param out the stream to write to
+     * @throws IOException if the plan cannot be written
+     */
+    public void write(OutputStream out) throws IOException {
+        List<String> strings = new ArrayList<String>();
+        Map<String, Integer> indexes = new HashMap<String, Integer>();
+        for (PlannedCase testCase : cases) {
+            index(testCase.getSuite(), strings, indexes);
+            index(testCase.getGroup(), strings, indexes);
+            index(testCase.getUrl(), strings, indexes);
+            index(testCase.getExpectedMarkup(), strings, indexes);
+            index(testCase.getSelector(), strings, indexes);
+            index(testCase.getValue(), strings, indexes);
+            index(testCase.getAttribute(), strings, indexes);
+        }
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(strings.size());
+        for (String string : strings) {
+            writeUTF8(data, string);
+        }
+        data.writeInt(cases.size());
+        for (PlannedCase testCase : cases) {
+            writeString(data, testCase.getSuite(), indexes);
+            writeString(data, testCase.getGroup(), indexes);
+            data.writeByte(testCase.getMethod().ordinal());
+            writeString(data, testCase.getUrl(), indexes);
+            writeString(data, testCase.getExpectedMarkup(), indexes);
+            data.writeShort(testCase.getExpectedStatusCode());
+            writeString(data, testCase.getSelector(), indexes);
+            writeString(data, testCase.getValue(), indexes);
+            writeString(data, testCase.getAttribute(), indexes);
+            data.writeBoolean(testCase.isPositive());
+            data.writeLong(testCase.getMaxLatencyMs());
+            data.writeLong(testCase.getMaxBytes());
+        }
+        data.flush();
+    }
+
+    private static void compile(JSONObject definition, List<PlannedCase> cases) {
+        String suite = null;
+        String location = "test definition";
+        try {
+            suite = definition.getString(JSON_SUITE);
+            location = "suite '" + suite + "'";
+            int expectedStatusCode = DEFAULT_STATUS_CODE;
+            if (definition.has(JSON_EXPECTED_STATUS_CODE)) {
+                expectedStatusCode = definition.getInt(JSON_EXPECTED_STATUS_CODE);
+            }
+            long maxLatencyMs = getBudget(definition, JSON_MAX_LATENCY_MS, 0);
+            long maxBytes = getBudget(definition, JSON_MAX_BYTES, 0);
+            String expectedMarkup = definition.optString(JSON_EXPECTED_MARKUP, null);
+            String suiteUrl = definition.optString(JSON_URL, null);
+            String suiteMethod = definition.optString(JSON_METHOD, null);
+            JSONArray groups = definition.getJSONArray(JSON_GROUPS);
+            for (int i = 0; i < groups.length(); i++) {
+                location = "suite '" + suite + "', group " + i;
+                JSONObject group = groups.getJSONObject(i);
+                String groupName = group.getString(JSON_GROUP_NAME);
+                location = "suite '" + suite + "', group '" + groupName + "'";
+                // as in the original runtime resolution, a group's expected markup, status code and budgets also apply to the following
+                // groups
+                if (group.has(JSON_EXPECTED_MARKUP)) {
+                    expectedMarkup = group.getString(JSON_EXPECTED_MARKUP);
+                }
+                if (group.has(JSON_EXPECTED_STATUS_CODE)) {
+                    expectedStatusCode = group.getInt(JSON_EXPECTED_STATUS_CODE);
+                }
+                maxLatencyMs = getBudget(group, JSON_MAX_LATENCY_MS, maxLatencyMs);
+                maxBytes = getBudget(group, JSON_MAX_BYTES, maxBytes);
+                if (expectedStatusCode < 100 || expectedStatusCode > 599) {
+                    throw new IllegalArgumentException("invalid expected status code " + expectedStatusCode);
+                }
+                String groupUrl = group.optString(JSON_URL, null);
+                String url = StringUtils.isEmpty(groupUrl) ? suiteUrl : groupUrl;
+                if (StringUtils.isEmpty(url)) {
+                    throw new IllegalArgumentException("missing '" + JSON_URL + "'");
+                }
+                String groupMethod = group.optString(JSON_METHOD, null);
+                String method = StringUtils.isEmpty(groupMethod) ? suiteMethod : groupMethod;
+                JSONArray groupCases = group.getJSONArray(JSON_GROUP_CASES);
+                for (int j = 0; j < groupCases.length(); j++) {
+                    location = "suite '" + suite + "', group '" + groupName + "', case " + j;
+                    cases.add(compileCase(suite, groupName, method, url, expectedMarkup, expectedStatusCode, maxLatencyMs, maxBytes,
+                            groupCases.getJSONObject(j)));
+                }
+            }
+        } catch (JSONException e) {
+            throw new IllegalArgumentException("Invalid " + location + ": " + e.getMessage(), e);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid " + location + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static PlannedCase compileCase(String suite, String group, String groupMethod, String url, String expectedMarkup,
+                                           int expectedStatusCode, long maxLatencyMs, long maxBytes, JSONObject testCase) {
+        String methodName = testCase.has(JSON_METHOD) ? testCase.getString(JSON_METHOD) : groupMethod;
+        Method method = Method.forName(methodName);
+        if (method == null) {
+            throw new IllegalArgumentException("unknown test method " + methodName);
+        }
+        String selector = testCase.getString(JSON_CASE_SELECTOR);
+        String value = null;
+        String attribute = null;
+        switch (method) {
+            case INNER_HTML_EQUALS:
+            case CONTAINS:
+                value = testCase.getString(JSON_CASE_VALUE);
+                break;
+            case HAS_ATTRIBUTE:
+                attribute = testCase.getString(JSON_CASE_ATTRIBUTE);
+                break;
+            case HAS_ATTRIBUTE_VALUE:
+                attribute = testCase.getString(JSON_CASE_ATTRIBUTE);
+                value = testCase.getString(JSON_CASE_VALUE);
+                break;
+            case HAS_CHILDREN:
+                value = String.valueOf(getExpectedChildren(testCase));
+                break;
+            default:
+                break;
+        }
+        boolean positive = !testCase.has(JSON_CASE_POSITIVE) || testCase.getBoolean(JSON_CASE_POSITIVE);
+        return new PlannedCase(suite, group, method, url, expectedMarkup, expectedStatusCode, selector, value, attribute, positive,
+                getBudget(testCase, JSON_MAX_LATENCY_MS, maxLatencyMs), getBudget(testCase, JSON_MAX_BYTES, maxBytes));
+    }
+
+    private static int getExpectedChildren(JSONObject testCase) {
+        if (!testCase.has(JSON_CASE_VALUE)) {
+            return 0;
+        }
+        Object value = testCase.get(JSON_CASE_VALUE);
+        int expectedChildren;
+        try {
+            expectedChildren = Integer.parseInt(value.toString().trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("the expected number of children '" + value + "' is not an integer");
+        }
+        if (expectedChildren < 0) {
+            throw new IllegalArgumentException("the expected number of children cannot be negative");
+        }
+        return expectedChildren;
+    }
+
+    private static long getBudget(JSONObject object, String key, long inherited) {
+        if (!object.has(key)) {
+            return inherited;
+        }
+        long budget = object.getLong(key);
+        if (budget < 0) {
+            throw new IllegalArgumentException("'" + key + "' cannot be negative");
+        }
+        return budget;
+    }
+
+    private static void index(String string, List<String> strings, Map<String, Integer> indexes) {
+        if (string != null && !indexes.containsKey(string)) {
+            indexes.put(string, strings.size());
+            strings.add(string);
+        }
+    }
+
+    private static void writeString(DataOutputStream data, String string, Map<String, Integer> indexes) throws IOException {
+        data.writeInt(string == null ? -1 : indexes.get(string));
+    }
+
+    /**
+     * Writes a length-prefixed UTF-8 string; unlike {@link DataOutputStream#writeUTF(String)}, the length of the string isn't limited
+     * to 64KB, so that large expected values can be stored.
+     */
+    private static void writeUTF8(DataOutputStream data, String string) throws IOException {
+        byte[] bytes = string.getBytes(CHARSET);
+        data.writeInt(bytes.length);
+        data.write(bytes);
+    }
+
+    private static String readUTF8(DataInputStream data) throws IOException {
+        int length = data.readInt();
+        if (length < 0) {
+            throw new IOException("Corrupted test plan.");
+        }
+        byte[] bytes = new byte[length];
+        data.readFully(bytes);
+        return new String(bytes, CHARSET);
+    }
+
+    private static String readString(DataInputStream data, String[] strings) throws IOException {
+        int index = data.readInt();
+        if (index < -1 || index >= strings.length) {
+            throw new IOException("Corrupted test plan.");
+        }
+        return index == -1 ? null : strings[index];
+    }
+}
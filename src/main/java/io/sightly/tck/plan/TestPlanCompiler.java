@@ -0,0 +1,91 @@
+/*******************************************************************************
+ * Copyright 2014 Adobe Systems Incorporated
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package io.sightly.tck.plan;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+/**
+ * Build time tool which compiles the JSON test definitions from a folder into a binary {@link TestPlan}. The build runs it on the
+ * embedded definitions so that malformed definitions fail the build instead of the test run.
+ * <p>
+ * Usage: {@code TestPlanCompiler <definitions folder> <plan file>}
+ */
+public final class TestPlanCompiler {
+
+    private TestPlanCompiler() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            throw new IllegalArgumentException("Usage: " + TestPlanCompiler.class.getName() + " <definitions folder> <plan file>");
+        }
+        File definitionsFolder = new File(args[0]);
+        File[] files = definitionsFolder.listFiles();
+        if (files == null) {
+            throw new IOException("Cannot list the test definitions from " + definitionsFolder.getAbsolutePath() + ".");
+        }
+        Arrays.sort(files);
+        List<PlannedCase> cases = new ArrayList<PlannedCase>();
+        for (File file : files) {
+            if (file.isFile()) {
+                try {
+                    cases.addAll(TestPlan.compile(Arrays.asList(parse(file))).getCases());
+                } catch (JSONException e) {
+                    throw new IllegalArgumentException(file.getName() + ": " + e.getMessage(), e);
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException(file.getName() + ": " + e.getMessage(), e);
+                }
+            }
+        }
+        TestPlan plan = TestPlan.of(cases);
+        File planFile = new File(args[1]);
+        File parent = planFile.getAbsoluteFile().getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Unable to create folder " + parent.getAbsolutePath() + ".");
+        }
+        OutputStream out = new FileOutputStream(planFile);
+        try {
+            plan.write(out);
+        } finally {
+            out.close();
+        }
+        System.out.println("Compiled " + plan.getCases().size() + " test cases from " + files.length + " test definitions into " +
+                planFile.getPath() + ".");
+    }
+
+    private static JSONObject parse(File file) throws IOException {
+        Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            return new JSONObject(new JSONTokener(reader));
+        } finally {
+            reader.close();
+        }
+    }
+}
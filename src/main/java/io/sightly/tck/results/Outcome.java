@@ -0,0 +1,67 @@
+/*******************************************************************************
+ * Copyright 2014 Adobe Systems Incorporated
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package io.sightly.tck.results;
+
+/**
+ * The outcome of a test case, as persisted by a {@link ResultsStore}.
+ */
+public enum Outcome {
+
+    /**
+     * All the case's assertions passed.
+     */
+    PASSED("passed"),
+
+    /**
+     * One of the case's assertions failed.
+     */
+    FAILED("failed"),
+
+    /**
+     * The case could not be evaluated, e.g. because its URL could not be fetched.
+     */
+    ERROR("error");
+
+    private final String label;
+
+    Outcome(String label) {
+        this.label = label;
+    }
+
+    /**
+     * Returns the label used for this outcome in the results file.
+     *
+     * @return the label
+     */
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * Returns the outcome with the given label.
+     *
+     * @param label the label
+     * @return the outcome, or {@code null} if there's no outcome with the given label
+     */
+    public static Outcome forLabel(String label) {
+        for (Outcome outcome : values()) {
+            if (outcome.label.equals(label)) {
+                return outcome;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,219 @@
+/*******************************************************************************
+ * Copyright 2014 Adobe Systems Incorporated
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package io.sightly.tck.results;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+/**
+ * Stores the outcome of each test case and the hash of each URL's response body across runs, in a JSON file. The stored outcomes allow
+ * re-running only the cases that failed, while the stored hashes allow re-running only the cases whose URL now responds with a
+ * different body. The store also keeps the {@link RunSummary} of the last run, so that the results of runs made in parallel can be
+ * merged.
+ */
+public final class ResultsStore {
+
+    private static final String JSON_VERSION = "version";
+    private static final String JSON_CASES = "cases";
+    private static final String JSON_URLS = "urls";
+    private static final String JSON_RUN = "run";
+    private static final int VERSION = 1;
+
+    private final File file;
+    private final Map<String, Outcome> outcomes = new ConcurrentHashMap<String, Outcome>();
+    private final Map<String, String> hashes = new ConcurrentHashMap<String, String>();
+    private volatile RunSummary lastRun;
+
+    private ResultsStore(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Creates an empty store, which replaces the {@code file} when saved.
+     *
+     * @param file the results file
+     * @return the store
+     */
+    public static ResultsStore create(File file) {
+        return new ResultsStore(file);
+    }
+
+    /**
+     * Loads the results stored in the {@code file}.
+     *
+     * @param file the results file
+     * @return the store, which is empty if the {@code file} doesn't exist
+     * @throws IOException if the {@code file} cannot be read or is not a results file
+     */
+    public static ResultsStore load(File file) throws IOException {
+        ResultsStore store = new ResultsStore(file);
+        if (!file.isFile()) {
+            return store;
+        }
+        Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+        try {
+            JSONObject json = new JSONObject(new JSONTokener(reader));
+            if (json.optInt(JSON_VERSION) != VERSION) {
+                throw new IOException("Unsupported results file version in " + file.getAbsolutePath() + ".");
+            }
+            JSONObject cases = json.getJSONObject(JSON_CASES);
+            for (Iterator<?> keys = cases.keys(); keys.hasNext(); ) {
+                String id = (String) keys.next();
+                Outcome outcome = Outcome.forLabel(cases.getString(id));
+                if (outcome != null) {
+                    store.outcomes.put(id, outcome);
+                }
+            }
+            JSONObject urls = json.getJSONObject(JSON_URLS);
+            for (Iterator<?> keys = urls.keys(); keys.hasNext(); ) {
+                String url = (String) keys.next();
+                store.hashes.put(url, urls.getString(url));
+            }
+            JSONObject run = json.optJSONObject(JSON_RUN);
+            if (run != null) {
+                store.lastRun = RunSummary.fromJSON(run);
+            }
+        } catch (JSONException e) {
+            throw new IOException("Invalid results file " + file.getAbsolutePath() + ": " + e.getMessage());
+        } finally {
+            reader.close();
+        }
+        return store;
+    }
+
+    /**
+     * Returns the file backing this store.
+     *
+     * @return the results file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the outcome of the last run of a test case.
+     *
+     * @param caseId the case's identifier
+     * @return the outcome, or {@code null} if the case didn't run yet
+     */
+    public Outcome getOutcome(String caseId) {
+        return outcomes.get(caseId);
+    }
+
+    /**
+     * Records the outcome of a test case.
+     *
+     * @param caseId  the case's identifier
+     * @param outcome the outcome
+     */
+    public void setOutcome(String caseId, Outcome outcome) {
+        outcomes.put(caseId, outcome);
+    }
+
+    /**
+     * Returns the hash of the response body last fetched for the {@code url}.
+     *
+     * @param url the URL
+     * @return the hash, or {@code null} if the {@code url} wasn't fetched yet
+     */
+    public String getHash(String url) {
+        return hashes.get(url);
+    }
+
+    /**
+     * Records the hash of the response body fetched for the {@code url}.
+     *
+     * @param url  the URL
+     * @param hash the hash of the response body
+     */
+    public void setHash(String url, String hash) {
+        hashes.put(url, hash);
+    }
+
+    /**
+     * Returns the summary of the last run.
+     *
+     * @return the summary, or {@code null} if no run was recorded
+     */
+    public RunSummary getLastRun() {
+        return lastRun;
+    }
+
+    /**
+     * Records the summary of the last run.
+     *
+     * @param lastRun the summary
+     */
+    public void setLastRun(RunSummary lastRun) {
+        this.lastRun = lastRun;
+    }
+
+    /**
+     * Copies the outcomes and the hashes of another store into this one, replacing the ones recorded for the same test cases and URLs.
+     *
+     * @param other the other store
+     */
+    public void putAll(ResultsStore other) {
+        outcomes.putAll(other.outcomes);
+        hashes.putAll(other.hashes);
+    }
+
+    /**
+     * Writes the stored results to the backing file. The file is replaced only after the results have been completely written.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    public synchronized void save() throws IOException {
+        JSONObject cases = new JSONObject();
+        for (Map.Entry<String, Outcome> entry : outcomes.entrySet()) {
+            cases.put(entry.getKey(), entry.getValue().getLabel());
+        }
+        JSONObject json = new JSONObject();
+        json.put(JSON_VERSION, VERSION);
+        json.put(JSON_CASES, cases);
+        json.put(JSON_URLS, new JSONObject(hashes));
+        if (lastRun != null) {
+            json.put(JSON_RUN, lastRun.toJSON());
+        }
+        File folder = file.getAbsoluteFile().getParentFile();
+        if (!folder.isDirectory() && !folder.mkdirs()) {
+            throw new IOException("Unable to create folder " + folder.getAbsolutePath() + ".");
+        }
+        File temp = new File(folder, file.getName() + ".tmp");
+        Writer writer = new OutputStreamWriter(new FileOutputStream(temp), "UTF-8");
+        try {
+            json.write(writer);
+        } finally {
+            writer.close();
+        }
+        if (!temp.renameTo(file) && !(file.delete() && temp.renameTo(file))) {
+            throw new IOException("Unable to write the results file " + file.getAbsolutePath() + ".");
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * Copyright 2014 Adobe Systems Incorporated
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package io.sightly.tck.results;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Summarises a run of the TCK: the number of tests run, the time it took and the failure reported by each failed test. The summaries of
+ * runs made in parallel, e.g. by the shards of a test plan, can be merged into the summary of a single run.
+ */
+public final class RunSummary {
+
+    private static final String JSON_TESTS = "tests";
+    private static final String JSON_TIME = "time";
+    private static final String JSON_FAILURES = "failures";
+
+    private final int tests;
+    private final long time;
+    private final SortedMap<String, String> failures;
+
+    /**
+     * Creates a run summary.
+     *
+     * @param tests    the number of tests run
+     * @param time     the run's duration, in milliseconds
+     * @param failures the failures, mapping the identifier of each failed test case to the description of its failure
+     */
+    public RunSummary(int tests, long time, Map<String, String> failures) {
+        this.tests = tests;
+        this.time = time;
+        this.failures = Collections.unmodifiableSortedMap(new TreeMap<String, String>(failures));
+    }
+
+    /**
+     * Merges the summaries of runs made in parallel. The merged run's duration is the longest of the runs' durations.
+     *
+     * @param summaries the summaries
+     * @return the merged summary
+     */
+    public static RunSummary merge(Collection<RunSummary> summaries) {
+        int tests = 0;
+        long time = 0;
+        Map<String, String> failures = new TreeMap<String, String>();
+        for (RunSummary summary : summaries) {
+            tests += summary.tests;
+            time = Math.max(time, summary.time);
+            failures.putAll(summary.failures);
+        }
+        return new RunSummary(tests, time, failures);
+    }
+
+    /**
+     * Returns the number of tests run.
+     *
+     * @return the number of tests
+     */
+    public int getTests() {
+        return tests;
+    }
+
+    /**
+     * Returns the run's duration.
+     *
+     * @return the duration, in milliseconds
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Returns the failures, ordered by the identifiers of the failed test cases.
+     *
+     * @return a map from the identifier of each failed test case to the description of its failure
+     */
+    public SortedMap<String, String> getFailures() {
+        return failures;
+    }
+
+    JSONObject toJSON() {
+        JSONObject json = new JSONObject();
+        json.put(JSON_TESTS, tests);
+        json.put(JSON_TIME, time);
+        json.put(JSON_FAILURES, new JSONObject(failures));
+        return json;
+    }
+
+    static RunSummary fromJSON(JSONObject json) throws JSONException {
+        Map<String, String> failures = new TreeMap<String, String>();
+        JSONObject failuresJSON = json.getJSONObject(JSON_FAILURES);
+        for (Iterator<?> keys = failuresJSON.keys(); keys.hasNext(); ) {
+            String id = (String) keys.next();
+            failures.put(id, failuresJSON.getString(id));
+        }
+        return new RunSummary(json.getInt(JSON_TESTS), json.getLong(JSON_TIME), failures);
+    }
+}
@@ -0,0 +1,212 @@
+/*******************************************************************************
+ * Copyright 2014 Adobe Systems Incorporated
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package io.sightly.tck.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Lightweight HTTP server, based on the JDK's built-in server, which serves static pages from memory. The TCK uses it to serve the
+ * expected output files at the URLs used by the test definitions, so that the TCK can run end-to-end without an HTL engine. Each page
+ * has an {@code ETag} and conditional {@code GET} requests for unchanged pages are answered with {@code 304 Not Modified}; pages are
+ * compressed with {@code gzip} for the requests accepting it.
+ */
+public class ReferenceServer {
+
+    private static final String CONTENT_TYPE = "text/html; charset=UTF-8";
+    private static final String NODELAY_PROPERTY = "sun.net.httpserver.nodelay";
+
+    private final Map<String, Page> pages = new ConcurrentHashMap<String, Page>();
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * Adds a page to the server.
+     *
+     * @param path       the page's path
+     * @param statusCode the status code to respond with
+     * @param body       the page's body
+     */
+    public void addPage(String path, int statusCode, byte[] body) {
+        pages.put(path, new Page(statusCode, body));
+    }
+
+    /**
+     * Returns the number of pages served by this server.
+     *
+     * @return the number of pages
+     */
+    public int getPages() {
+        return pages.size();
+    }
+
+    /**
+     * Starts the server.
+     *
+     * @param address the address to bind to; a {@code 0} port binds to an ephemeral port
+     * @param threads the number of threads handling the requests
+     * @throws IOException if the server cannot be bound to the {@code address}
+     */
+    public synchronized void start(InetSocketAddress address, int threads) throws IOException {
+        if (server != null) {
+            throw new IllegalStateException("The server is already started.");
+        }
+        if (System.getProperty(NODELAY_PROPERTY) == null) {
+            // the JDK server writes the headers and the body separately; without TCP_NODELAY Nagle's algorithm delays small responses
+            System.setProperty(NODELAY_PROPERTY, "true");
+        }
+        server = HttpServer.create(address, 0);
+        server.createContext("/", new PageHandler());
+        executor = Executors.newFixedThreadPool(threads, new ServerThreadFactory());
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * Returns the port the server is bound to.
+     *
+     * @return the port
+     */
+    public synchronized int getPort() {
+        if (server == null) {
+            throw new IllegalStateException("The server is not started.");
+        }
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops the server.
+     */
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            server = null;
+            executor = null;
+        }
+    }
+
+    private class PageHandler implements HttpHandler {
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                String method = exchange.getRequestMethod();
+                boolean head = "HEAD".equals(method);
+                if (!head && !"GET".equals(method)) {
+                    exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+                    exchange.sendResponseHeaders(405, -1);
+                    return;
+                }
+                Page page = pages.get(exchange.getRequestURI().getPath());
+                if (page == null) {
+                    exchange.sendResponseHeaders(404, -1);
+                    return;
+                }
+                boolean gzip = acceptsGzip(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+                // the compressed representation has its own entity tag
+                String etag = gzip ? page.etag.substring(0, page.etag.length() - 1) + "-gzip\"" : page.etag;
+                exchange.getResponseHeaders().set("ETag", etag);
+                exchange.getResponseHeaders().set("Vary", "Accept-Encoding");
+                if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    exchange.sendResponseHeaders(304, -1);
+                    return;
+                }
+                exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+                byte[] body = page.body;
+                if (gzip) {
+                    exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                    body = page.getGzippedBody();
+                }
+                if (head) {
+                    exchange.getResponseHeaders().set("Content-Length", String.valueOf(body.length));
+                    exchange.sendResponseHeaders(page.statusCode, -1);
+                    return;
+                }
+                exchange.sendResponseHeaders(page.statusCode, body.length == 0 ? -1 : body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            } finally {
+                exchange.close();
+            }
+        }
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if ("gzip".equalsIgnoreCase(parts[0].trim())) {
+                return parts.length == 1 || !parts[1].trim().matches("q\\s*=\\s*0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
+    private static class Page {
+
+        private final int statusCode;
+        private final byte[] body;
+        private final String etag;
+        private byte[] gzippedBody;
+
+        Page(int statusCode, byte[] body) {
+            this.statusCode = statusCode;
+            this.body = body;
+            this.etag = "\"" + Integer.toHexString(statusCode) + "-" + Integer.toHexString(Arrays.hashCode(body)) + "\"";
+        }
+
+        synchronized byte[] getGzippedBody() throws IOException {
+            if (gzippedBody == null) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                GZIPOutputStream gzip = new GZIPOutputStream(bytes);
+                gzip.write(body);
+                gzip.close();
+                gzippedBody = bytes.toByteArray();
+            }
+            return gzippedBody;
+        }
+    }
+
+    private static class ServerThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "tck-reference-server-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
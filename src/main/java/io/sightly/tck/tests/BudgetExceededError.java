@@ -0,0 +1,37 @@
+/*******************************************************************************
+ * Copyright 2014 Adobe Systems Incorporated
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package io.sightly.tck.tests;
+
+import junit.framework.AssertionFailedError;
+
+/**
+ * Failure reported by a test case whose script's response exceeded one of the performance budgets of its definition, i.e. {@code
+ * maxLatencyMs} or {@code maxBytes}. The failure is distinct from the functional assertion failures, so that reports can tell them
+ * apart.
+ */
+public class BudgetExceededError extends AssertionFailedError {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Creates a budget failure.
+     *
+     * @param message the failure's message
+     */
+    public BudgetExceededError(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,60 @@
+/*******************************************************************************
+ * Copyright 2014 Adobe Systems Incorporated
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package io.sightly.tck.tests;
+
+/**
+ * The latency, size and hash of the response fetched for a URL.
+ */
+final class FetchStats {
+
+    private final long latencyNanos;
+    private final long bytes;
+    private final String hash;
+
+    FetchStats(long latencyNanos, long bytes, String hash) {
+        this.latencyNanos = latencyNanos;
+        this.bytes = bytes;
+        this.hash = hash;
+    }
+
+    /**
+     * Returns the time from sending the request until the whole response body was received, excluding the time spent parsing the body
+     * while it was streamed.
+     *
+     * @return the latency, in nanoseconds
+     */
+    long getLatencyNanos() {
+        return latencyNanos;
+    }
+
+    /**
+     * Returns the size of the response body.
+     *
+     * @return the size in bytes
+     */
+    long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Returns the hexadecimal SHA-1 hash of the response body.
+     *
+     * @return the hash
+     */
+    String getHash() {
+        return hash;
+    }
+}
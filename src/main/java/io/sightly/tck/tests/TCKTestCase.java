@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * Copyright 2014 Adobe Systems Incorporated
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package io.sightly.tck.tests;
+
+import io.sightly.tck.assertions.Assertion;
+import io.sightly.tck.http.Client;
+import io.sightly.tck.metrics.Metrics;
+import io.sightly.tck.plan.PlannedCase;
+import junit.framework.TestCase;
+
+/**
+ * JUnit test case built by the {@link TestBuilder} from a {@link PlannedCase}, whose checks are compiled into an {@link Assertion} when
+ * the test is built.
+ */
+public class TCKTestCase extends TestCase {
+
+    private final Client client;
+    private final String url;
+    private final String id;
+    private final String name;
+    private final PlannedCase testCase;
+    private final Assertion assertion;
+    private final int expectedStatusCode;
+    private final String selector;
+
+    TCKTestCase(Client client, String url, String id, PlannedCase testCase) {
+        this.client = client;
+        this.url = url;
+        this.id = id;
+        this.name = getName(testCase);
+        this.testCase = testCase;
+        this.assertion = Assertion.compile(testCase);
+        this.expectedStatusCode = testCase.getExpectedStatusCode();
+        this.selector = testCase.getSelector();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    static String getName(PlannedCase testCase) {
+        return testCase.getSuite() + ": " + testCase.getGroup() + " - " + testCase.getSelector();
+    }
+
+    /**
+     * Returns the identifier of this test case, which is its name followed, for all but the first of the cases with the same name, by
+     * the case's position among them.
+     *
+     * @return the identifier
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Returns the URL whose content is checked by this test case.
+     *
+     * @return the URL
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * Returns the status code the server is expected to respond with for this test case's URL.
+     *
+     * @return the expected status code
+     */
+    public int getExpectedStatusCode() {
+        return expectedStatusCode;
+    }
+
+    /**
+     * Returns the selector of the element(s) checked by this test case.
+     *
+     * @return the selector
+     */
+    public String getSelector() {
+        return selector;
+    }
+
+    Client getClient() {
+        return client;
+    }
+
+    @Override
+    protected void runTest() throws Throwable {
+        TestBuilder.fetch(client, url, expectedStatusCode);
+        long start = System.nanoTime();
+        try {
+            assertion.evaluate(url);
+        } finally {
+            Metrics.recordCase(name, url, testCase.getMethod().getName(), System.nanoTime() - start);
+        }
+        checkBudgets();
+    }
+
+    /**
+     * Checks the fetched response against the case's performance budgets, after the functional assertions passed.
+     */
+    private void checkBudgets() {
+        FetchStats stats = TestBuilder.getFetchStats(url);
+        if (stats == null) {
+            return;
+        }
+        long maxLatencyMs = testCase.getMaxLatencyMs();
+        if (maxLatencyMs > 0 && stats.getLatencyNanos() > maxLatencyMs * 1000000L) {
+            throw new BudgetExceededError(String.format("Fetching %s took %.3f ms, exceeding the latency budget of %d ms.", url,
+                    stats.getLatencyNanos() / 1e6, maxLatencyMs));
+        }
+        long maxBytes = testCase.getMaxBytes();
+        if (maxBytes > 0 && stats.getBytes() > maxBytes) {
+            throw new BudgetExceededError(String.format("The response of %s has %d bytes, exceeding the size budget of %d bytes.", url,
+                    stats.getBytes(), maxBytes));
+        }
+    }
+}
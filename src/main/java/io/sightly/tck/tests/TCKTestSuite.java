@@ -0,0 +1,300 @@
+/*******************************************************************************
+ * Copyright 2014 Adobe Systems Incorporated
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package io.sightly.tck.tests;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.sightly.tck.html.HTMLExtractor;
+import io.sightly.tck.http.ResponseRecorder;
+import io.sightly.tck.metrics.Metrics;
+import io.sightly.tck.results.Outcome;
+import io.sightly.tck.results.ResultsStore;
+import io.sightly.tck.results.RunSummary;
+import junit.framework.AssertionFailedError;
+import junit.framework.Test;
+import junit.framework.TestListener;
+import junit.framework.TestResult;
+import junit.framework.TestSuite;
+
+/**
+ * {@link TestSuite} which runs the TCK tests in three stages:
+ * <ol>
+ *     <li>an optional prefetch stage, which concurrently fetches and parses all the distinct URLs used by the suite's tests;</li>
+ *     <li>an optional batch evaluation stage, which matches the selectors of all the tests using a URL in a single traversal of the
+ *     page, as soon as the page is loaded;</li>
+ *     <li>the execution stage, which runs the tests either sequentially or concurrently on a fixed pool of worker threads.</li>
+ * </ol>
+ * The {@link TestResult} methods are synchronised, therefore results are collected exactly like for a sequential run; only the order in
+ * which tests finish may differ. The page fetched for a URL is released as soon as the last test using it has run. The durations of the
+ * run's phases are collected by {@link Metrics} and can be exported once all the tests have run, together with the tests' outcomes
+ * which can be saved in a {@link ResultsStore}.
+ */
+public class TCKTestSuite extends TestSuite {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TCKTestSuite.class);
+
+    private final int threads;
+    private final int prefetchThreads;
+    private final boolean batch;
+    private final Map<String, AtomicInteger> pendingTests = new ConcurrentHashMap<String, AtomicInteger>();
+    private File metricsFolder;
+    private ResultsStore results;
+
+    /**
+     * Creates a test suite.
+     *
+     * @param threads         the number of worker threads used for running the tests; {@code 1} runs the tests sequentially
+     * @param prefetchThreads the maximum number of URLs fetched concurrently before running the tests; {@code 0} disables prefetching
+     * @param batch           {@code true} if the selectors of all the tests using a URL should be evaluated in a single traversal of
+     *                        the page, {@code false} if each test should evaluate its selector independently
+     */
+    public TCKTestSuite(int threads, int prefetchThreads, boolean batch) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("The number of threads has to be a positive integer.");
+        }
+        if (prefetchThreads < 0) {
+            throw new IllegalArgumentException("The number of prefetch threads cannot be negative.");
+        }
+        this.threads = threads;
+        this.prefetchThreads = prefetchThreads;
+        this.batch = batch;
+    }
+
+    /**
+     * Returns the number of worker threads used by this suite.
+     *
+     * @return the number of worker threads
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Sets the folder where the run's {@link Metrics} are exported after the tests have run.
+     *
+     * @param metricsFolder the folder; {@code null} disables the export
+     */
+    public void setMetricsFolder(File metricsFolder) {
+        this.metricsFolder = metricsFolder;
+    }
+
+    /**
+     * Sets the store where the outcome of each test and the hash of each fetched URL's response body are saved after the tests have
+     * run.
+     *
+     * @param results the results store; {@code null} disables storing the results
+     */
+    public void setResultsStore(ResultsStore results) {
+        this.results = results;
+    }
+
+    @Override
+    public void run(TestResult result) {
+        Metrics.reset();
+        long start = System.currentTimeMillis();
+        OutcomeRecorder recorder = null;
+        if (results != null) {
+            recorder = new OutcomeRecorder(results);
+            result.addListener(recorder);
+        }
+        try {
+            runTests(result);
+        } finally {
+            try {
+                ResponseRecorder responseRecorder = TestBuilder.closeRecorder();
+                if (responseRecorder != null) {
+                    LOG.info("Recorded {} responses in archive {}.", responseRecorder.getResponses(),
+                            responseRecorder.getFile().getAbsolutePath());
+                }
+            } catch (IOException e) {
+                LOG.error("Unable to write the response archive.", e);
+            }
+            TestBuilder.shutdownClient();
+            if (recorder != null) {
+                result.removeListener(recorder);
+                results.setLastRun(recorder.getSummary(System.currentTimeMillis() - start));
+                try {
+                    results.save();
+                    LOG.info("Saved the run's results to file {}.", results.getFile().getAbsolutePath());
+                } catch (IOException e) {
+                    LOG.error("Unable to save the run's results to file " + results.getFile().getAbsolutePath() + ".", e);
+                }
+            }
+            if (metricsFolder != null) {
+                try {
+                    Metrics.export(metricsFolder);
+                    LOG.info("Exported the run's metrics to folder {}.", metricsFolder.getAbsolutePath());
+                } catch (IOException e) {
+                    LOG.error("Unable to export the run's metrics to folder " + metricsFolder.getAbsolutePath() + ".", e);
+                }
+            }
+        }
+    }
+
+    private void runTests(final TestResult result) {
+        pendingTests.clear();
+        Map<String, Set<String>> selectors = new LinkedHashMap<String, Set<String>>();
+        for (Test test : Collections.list(tests())) {
+            if (test instanceof TCKTestCase) {
+                TCKTestCase testCase = (TCKTestCase) test;
+                String url = testCase.getUrl();
+                AtomicInteger pending = pendingTests.get(url);
+                if (pending == null) {
+                    pending = new AtomicInteger();
+                    pendingTests.put(url, pending);
+                    selectors.put(url, new LinkedHashSet<String>());
+                }
+                pending.incrementAndGet();
+                selectors.get(url).add(testCase.getSelector());
+            }
+        }
+        if (batch) {
+            for (Map.Entry<String, Set<String>> entry : selectors.entrySet()) {
+                HTMLExtractor.plan(entry.getKey(), entry.getValue());
+            }
+        }
+        if (prefetchThreads > 0) {
+            TestBuilder.prefetch(Collections.list(tests()), prefetchThreads);
+        }
+        if (threads == 1) {
+            super.run(result);
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new DaemonThreadFactory("tck-worker"));
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        try {
+            for (final Test test : Collections.list(tests())) {
+                if (result.shouldStop()) {
+                    break;
+                }
+                futures.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!result.shouldStop()) {
+                            runTest(test, result);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            result.stop();
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Unexpected error while running tests.", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Override
+    public void runTest(Test test, TestResult result) {
+        try {
+            super.runTest(test, result);
+        } finally {
+            if (test instanceof TCKTestCase) {
+                String url = ((TCKTestCase) test).getUrl();
+                AtomicInteger pending = pendingTests.get(url);
+                if (pending != null && pending.decrementAndGet() == 0) {
+                    FetchStats stats = TestBuilder.getFetchStats(url);
+                    if (results != null && stats != null) {
+                        results.setHash(url, stats.getHash());
+                    }
+                    HTMLExtractor.release(url);
+                    TestBuilder.release(url);
+                }
+            }
+        }
+    }
+
+    /**
+     * Records the outcome of each {@link TCKTestCase} in a {@link ResultsStore} and summarises the run.
+     */
+    private static class OutcomeRecorder implements TestListener {
+
+        private final ResultsStore results;
+        private final Map<Test, Outcome> outcomes = new ConcurrentHashMap<Test, Outcome>();
+        private final Map<Test, String> descriptions = new ConcurrentHashMap<Test, String>();
+        private final Map<String, String> failures = new ConcurrentHashMap<String, String>();
+        private final AtomicInteger tests = new AtomicInteger();
+
+        OutcomeRecorder(ResultsStore results) {
+            this.results = results;
+        }
+
+        @Override
+        public void startTest(Test test) {
+        }
+
+        @Override
+        public void addError(Test test, Throwable t) {
+            outcomes.put(test, Outcome.ERROR);
+            descriptions.put(test, describe(test, t));
+        }
+
+        @Override
+        public void addFailure(Test test, AssertionFailedError t) {
+            if (!outcomes.containsKey(test)) {
+                outcomes.put(test, Outcome.FAILED);
+                descriptions.put(test, describe(test, t));
+            }
+        }
+
+        @Override
+        public void endTest(Test test) {
+            tests.incrementAndGet();
+            Outcome outcome = outcomes.remove(test);
+            String description = descriptions.remove(test);
+            if (test instanceof TCKTestCase) {
+                String id = ((TCKTestCase) test).getId();
+                results.setOutcome(id, outcome == null ? Outcome.PASSED : outcome);
+                if (description != null) {
+                    failures.put(id, description);
+                }
+            }
+        }
+
+        RunSummary getSummary(long time) {
+            return new RunSummary(tests.get(), time, failures);
+        }
+
+        /**
+         * Describes a failure like JUnit's {@link org.junit.runner.notification.Failure#toString()}.
+         */
+        private static String describe(Test test, Throwable t) {
+            return test + ": " + t.getMessage();
+        }
+    }
+}
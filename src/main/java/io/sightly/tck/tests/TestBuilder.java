@@ -15,18 +15,45 @@
  ******************************************************************************/
 package io.sightly.tck.tests;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
 
 import org.apache.commons.lang.StringUtils;
-import org.json.JSONArray;
 import org.json.JSONObject;
+import org.jsoup.nodes.Document;
 
 import io.sightly.tck.Constants;
 import io.sightly.tck.html.HTMLExtractor;
 import io.sightly.tck.http.Client;
+import io.sightly.tck.http.ResponseArchive;
+import io.sightly.tck.http.ResponseCache;
+import io.sightly.tck.http.ResponseCallback;
+import io.sightly.tck.http.ResponseHandler;
+import io.sightly.tck.http.ResponseRecorder;
+import io.sightly.tck.http.TimingInputStream;
+import io.sightly.tck.plan.PlanFilter;
+import io.sightly.tck.plan.PlannedCase;
+import io.sightly.tck.plan.Shard;
+import io.sightly.tck.plan.TestPlan;
+import io.sightly.tck.results.Outcome;
+import io.sightly.tck.results.ResultsStore;
+import junit.framework.Test;
 import junit.framework.TestCase;
 
 /**
@@ -46,8 +73,13 @@ public class TestBuilder {
     public static final String JSON_CASE_POSITIVE = "positive";
     public static final String JSON_CASE_ATTRIBUTE = "attribute";
     public static final String JSON_EXPECTED_STATUS_CODE = "expectedStatusCode";
+    public static final String JSON_MAX_LATENCY_MS = "maxLatencyMs";
+    public static final String JSON_MAX_BYTES = "maxBytes";
 
-    private static Map<String, String> content = new ConcurrentHashMap<String, String>();
+    private static final ConcurrentMap<String, FetchStats> fetches = new ConcurrentHashMap<String, FetchStats>();
+
+    private static Client client;
+    private static ResponseRecorder recorder;
 
     /**
      * Creates a JUnit tests from a JSON test description. Examples of such files can be found in the {@code
@@ -57,185 +89,312 @@ public class TestBuilder {
      * @return the list of tests
      */
     public static List<TestCase> getTests(JSONObject testDescription) {
-        String serverURL = System.getProperty(Constants.SYS_PROP_SERVER_URL);
-        String user = System.getProperty(Constants.SYS_PROP_USER);
-        String password = System.getProperty(Constants.SYS_PROP_PASS);
-        Client client;
-        if (StringUtils.isNotEmpty(user) && StringUtils.isNotEmpty(password)) {
-            client = new Client(user, password);
-        } else {
-            client = new Client();
+        if (testDescription == null) {
+            return new ArrayList<TestCase>();
         }
+        return getTests(TestPlan.compile(Collections.singletonList(testDescription)));
+    }
+
+    /**
+     * Creates the JUnit tests of a {@link TestPlan}. The plan is first pruned to the cases selected by the {@link PlanFilter} defined by
+     * the system properties, so that only the URLs used by the selected cases are fetched. If a {@link Shard} is defined by the system
+     * properties, only the cases of the URLs assigned to it are kept.
+     *
+     * @param testPlan the test plan
+     * @return the list of tests
+     */
+    public static List<TestCase> getTests(TestPlan testPlan) {
+        PlanFilter filter = PlanFilter.fromSystemProperties();
+        Shard shard = Shard.fromSystemProperties();
+        Set<String> shardUrls = shard == null ? null : shard.getUrls(testPlan.filter(filter));
+        String serverURL = System.getProperty(Constants.SYS_PROP_SERVER_URL);
+        Client client = null;
+        Map<String, Integer> names = new HashMap<String, Integer>();
         ArrayList<TestCase> tests = new ArrayList<TestCase>();
-        if (testDescription != null) {
-            int expectedStatusCode = 200;
-            String expectedMarkupPath = null;
-            if (testDescription.has(JSON_EXPECTED_MARKUP)) {
-                expectedMarkupPath = testDescription.getString(JSON_EXPECTED_MARKUP);
-            }
-            String suite = testDescription.getString(JSON_SUITE);
-            String suiteUrl = null;
-            if (testDescription.has(JSON_URL)) {
-                suiteUrl = testDescription.getString(JSON_URL);
-            }
-            String suiteMethod = null;
-            if (testDescription.has(JSON_METHOD)) {
-                suiteMethod = testDescription.getString(JSON_METHOD);
+        for (PlannedCase testCase : testPlan.getCases()) {
+            // the identifiers are assigned on the whole plan, so that they don't depend on the filter
+            String name = TCKTestCase.getName(testCase);
+            Integer count = names.get(name);
+            names.put(name, count == null ? 1 : count + 1);
+            if (filter.accept(testCase) && (shardUrls == null || shardUrls.contains(testCase.getUrl()))) {
+                if (client == null) {
+                    client = getClient();
+                }
+                String id = count == null ? name : name + " [" + (count + 1) + "]";
+                tests.add(new TCKTestCase(client, serverURL + testCase.getUrl(), id, testCase));
             }
-            JSONArray groups = testDescription.getJSONArray(JSON_GROUPS);
-            if (testDescription.has(JSON_EXPECTED_STATUS_CODE)) {
-                expectedStatusCode = testDescription.getInt(JSON_EXPECTED_STATUS_CODE);
+        }
+        return tests;
+    }
+
+    /**
+     * Selects the tests whose last stored outcome is a failure or an error.
+     *
+     * @param tests   the tests
+     * @param results the stored results
+     * @return the selected tests
+     */
+    public static List<TestCase> selectFailed(List<TestCase> tests, ResultsStore results) {
+        List<TestCase> selected = new ArrayList<TestCase>();
+        for (TestCase test : tests) {
+            if (test instanceof TCKTestCase) {
+                Outcome outcome = results.getOutcome(((TCKTestCase) test).getId());
+                if (outcome == Outcome.FAILED || outcome == Outcome.ERROR) {
+                    selected.add(test);
+                }
             }
-            for (int i = 0; i < groups.length(); i++) {
-                JSONObject group = groups.getJSONObject(i);
-                String groupName = group.getString(JSON_GROUP_NAME);
-                JSONArray groupCases = group.getJSONArray(JSON_GROUP_CASES);
-                if (group.has(JSON_EXPECTED_MARKUP)) {
-                    expectedMarkupPath = group.getString(JSON_EXPECTED_MARKUP);
+        }
+        return selected;
+    }
+
+    /**
+     * Selects the tests whose URL responds with a body different from the one stored for it. All the URLs are fetched, using at most
+     * {@code threads} concurrent requests; the pages of the URLs which didn't change are released. The tests of the URLs which cannot
+     * be fetched are selected, so that they report the error.
+     *
+     * @param tests   the tests
+     * @param results the stored results
+     * @param threads the maximum number of concurrent requests
+     * @return the selected tests
+     */
+    public static List<TestCase> selectChanged(List<TestCase> tests, ResultsStore results, int threads) {
+        prefetch(new ArrayList<Test>(tests), threads);
+        Set<String> unchanged = new HashSet<String>();
+        List<TestCase> selected = new ArrayList<TestCase>();
+        for (TestCase test : tests) {
+            if (test instanceof TCKTestCase) {
+                String url = ((TCKTestCase) test).getUrl();
+                FetchStats stats = fetches.get(url);
+                if (stats == null || !stats.getHash().equals(results.getHash(url))) {
+                    selected.add(test);
+                } else {
+                    unchanged.add(url);
                 }
-                String groupMethod = null;
-                if (group.has(JSON_METHOD)) {
-                    groupMethod = group.getString(JSON_METHOD);
+            }
+        }
+        for (String url : unchanged) {
+            HTMLExtractor.release(url);
+            release(url);
+        }
+        return selected;
+    }
+
+    /**
+     * Fetches and parses the content of all the distinct URLs used by the {@code tests} which were not loaded yet, with at most {@code
+     * threads} asynchronous requests of the tests' {@link Client} in flight at the same time. This method returns once all the
+     * documents were cached. Fetching errors are not reported here; they are cached and will be reported by every test case that uses
+     * the failing URL.
+     *
+     * @param tests   the tests whose URLs should be fetched
+     * @param threads the maximum number of concurrent requests
+     */
+    public static void prefetch(List<Test> tests, int threads) {
+        final Map<String, TCKTestCase> urls = new LinkedHashMap<String, TCKTestCase>();
+        for (Test test : tests) {
+            if (test instanceof TCKTestCase) {
+                TCKTestCase testCase = (TCKTestCase) test;
+                if (!urls.containsKey(testCase.getUrl()) && !HTMLExtractor.isLoaded(testCase.getUrl())) {
+                    urls.put(testCase.getUrl(), testCase);
                 }
-                String groupURL = null;
-                if (group.has(JSON_URL)) {
-                    groupURL = group.getString(JSON_URL);
+            }
+        }
+        if (urls.isEmpty()) {
+            return;
+        }
+        Semaphore permits = new Semaphore(threads);
+        try {
+            for (TCKTestCase testCase : urls.values()) {
+                permits.acquire();
+                fetchAsync(testCase.getClient(), testCase.getUrl(), testCase.getExpectedStatusCode(), permits);
+            }
+            // each request returns its permit once its document, or its failure, is cached
+            permits.acquire(threads);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns the HTTP client shared by all the tests, creating it on first use from the {@link Constants} system properties.
+     *
+     * @return the shared HTTP client
+     */
+    public static synchronized Client getClient() {
+        if (client == null) {
+            String user = System.getProperty(Constants.SYS_PROP_USER);
+            String password = System.getProperty(Constants.SYS_PROP_PASS);
+            if (StringUtils.isEmpty(user) || StringUtils.isEmpty(password)) {
+                user = null;
+                password = null;
+            }
+            client = new Client(user, password,
+                    Integer.getInteger(Constants.SYS_PROP_MAX_CONNECTIONS_PER_HOST, Client.DEFAULT_MAX_CONNECTIONS_PER_HOST),
+                    Integer.getInteger(Constants.SYS_PROP_MAX_CONNECTIONS, Client.DEFAULT_MAX_CONNECTIONS),
+                    Long.getLong(Constants.SYS_PROP_IDLE_CONNECTION_TIMEOUT, Client.DEFAULT_IDLE_CONNECTION_TIMEOUT));
+            client.setMaxBodySize(Long.getLong(Constants.SYS_PROP_MAX_BODY_SIZE, 0));
+            client.setCompression(Boolean.getBoolean(Constants.SYS_PROP_COMPRESSION));
+            String cacheDir = System.getProperty(Constants.SYS_PROP_HTTP_CACHE_DIR);
+            if (StringUtils.isNotEmpty(cacheDir)) {
+                try {
+                    client.setResponseCache(new ResponseCache(new File(cacheDir),
+                            Long.getLong(Constants.SYS_PROP_HTTP_CACHE_SIZE, ResponseCache.DEFAULT_MAX_SIZE)));
+                } catch (IOException e) {
+                    throw new IllegalStateException("Unable to open the HTTP response cache in folder " + cacheDir + ".", e);
                 }
-                if (group.has(JSON_EXPECTED_STATUS_CODE)) {
-                    expectedStatusCode = group.getInt(JSON_EXPECTED_STATUS_CODE);
+            }
+            String replayFile = System.getProperty(Constants.SYS_PROP_REPLAY_FILE);
+            if (StringUtils.isNotEmpty(replayFile)) {
+                try {
+                    client.setReplayArchive(ResponseArchive.open(new File(replayFile),
+                            System.getProperty(Constants.SYS_PROP_SERVER_URL)));
+                } catch (IOException e) {
+                    throw new IllegalStateException("Unable to open the response archive " + replayFile + ".", e);
                 }
-                String contentURL = serverURL + (StringUtils.isEmpty(groupURL) ? suiteUrl : groupURL);
-                String method = StringUtils.isEmpty(groupMethod) ? suiteMethod : groupMethod;
-                for (int j = 0; j < groupCases.length(); j++) {
-                    JSONObject testCase = groupCases.getJSONObject(j);
-                    tests.add(buildTestCase(client, expectedStatusCode, contentURL, suite, groupName, method, testCase,
-                            expectedMarkupPath));
+            }
+            String recordFile = System.getProperty(Constants.SYS_PROP_RECORD_FILE);
+            if (StringUtils.isNotEmpty(recordFile)) {
+                try {
+                    recorder = ResponseRecorder.create(new File(recordFile), System.getProperty(Constants.SYS_PROP_SERVER_URL));
+                } catch (IOException e) {
+                    throw new IllegalStateException("Unable to create the response archive " + recordFile + ".", e);
                 }
+                client.setRecorder(recorder);
             }
         }
-        return tests;
+        return client;
     }
 
-    private static TestCase buildTestCase(final Client client, final int expectedStatusCode, final String url, final String suite,
-                                          final String groupName, final String method, final JSONObject testCase,
-                                          final String expectedMarkupPath) {
+    /**
+     * Stops recording the responses received by the shared HTTP client, if they are being recorded, and writes the archive's index.
+     *
+     * @return the closed recorder, or {@code null} if the responses weren't being recorded
+     * @throws IOException if the archive cannot be written
+     */
+    public static synchronized ResponseRecorder closeRecorder() throws IOException {
+        ResponseRecorder closed = recorder;
+        if (closed != null) {
+            recorder = null;
+            client.setRecorder(null);
+            closed.close();
+        }
+        return closed;
+    }
 
-        final String selector = testCase.getString(JSON_CASE_SELECTOR);
+    /**
+     * Shuts the shared HTTP client down, closing its pooled connections; the next call to {@link #getClient()} creates a new client.
+     */
+    public static synchronized void shutdownClient() {
+        if (client != null) {
+            client.shutdown();
+            client = null;
+        }
+    }
 
-        return new TestCase() {
+    /**
+     * Fetches the content available at {@code url} and parses it into the document used by the {@link HTMLExtractor}. The response body
+     * is streamed straight into the parser. Each {@code url} is fetched at most once; failures are cached and reported to every caller.
+     */
+    static void fetch(final Client client, final String url, final int expectedStatusCode) {
+        HTMLExtractor.load(url, new Callable<Document>() {
             @Override
-            public String getName() {
-                return suite + ": " + groupName + " - " + selector;
+            public Document call() {
+                return client.getContent(url, expectedStatusCode, createDocumentHandler(url, System.nanoTime()));
             }
+        });
+    }
 
+    /**
+     * Fetches the content available at {@code url} with an asynchronous request and caches the parsed document, or the request's
+     * failure, in the {@link HTMLExtractor}. The {@code permits} are released once the outcome is cached.
+     */
+    private static void fetchAsync(Client client, final String url, int expectedStatusCode, final Semaphore permits) {
+        ResponseCallback<Document> callback = new ResponseCallback<Document>() {
             @Override
-            protected void runTest() throws Throwable {
-                if (!content.containsKey(url)) {
-                    content.put(url, client.getStringContent(url, expectedStatusCode));
-                }
-                String overriddenMethod = method;
-                if (testCase.has(JSON_METHOD)) {
-                    overriddenMethod = testCase.getString(JSON_METHOD);
+            public void completed(final Document document) {
+                try {
+                    HTMLExtractor.load(url, new Callable<Document>() {
+                        @Override
+                        public Document call() {
+                            return document;
+                        }
+                    });
+                } finally {
+                    permits.release();
                 }
-                String output = content.get(url);
-                if ("innerHTMLEquals".equals(overriddenMethod)) {
-                    String value = HTMLExtractor.innerHTML(url, output, selector);
-                    String expectedValue = testCase.getString(JSON_CASE_VALUE);
-                    assertTrue(String.format("Expected to find an element matching selector '%s'. Please check the expected markup " +
-                            "from %s.", selector, expectedMarkupPath), HTMLExtractor.exists(url, output, selector));
-                    assertTrue(String.format(
-                            "Expected value '%s' for selector '%s'. Instead we got '%s'. Please check the expected markup from %s" +
-                                    ".", expectedValue, selector, value, expectedMarkupPath), expectedValue.equals(value));
-                } else if ("contains".equals(overriddenMethod)) {
-                    String expectedValue = testCase.getString(JSON_CASE_VALUE);
-                    boolean contains = HTMLExtractor.contains(url, output, selector, expectedValue);
-                    assertTrue(String.format("Expected to find an element matching selector '%s'. Please check the expected markup " +
-                            "from %s.", selector, expectedMarkupPath), HTMLExtractor.exists(url, output, selector));
-                    assertTrue(String.format("Missing content for selector '%s'. Please check the expected markup from %s.", selector,
-                            expectedMarkupPath), contains);
-                } else if ("exists".equals(overriddenMethod)) {
-                    boolean exists = true;
-                    if (testCase.has(JSON_CASE_POSITIVE)) {
-                        exists = testCase.getBoolean(JSON_CASE_POSITIVE);
-                    }
-                    if (exists) {
-                        assertTrue(String.format("Expected to find an element matching selector '%s'. Please check the expected markup " +
-                                "from %s.", selector, expectedMarkupPath), HTMLExtractor.exists(url, output, selector));
-                    } else {
-                        assertFalse(String.format("Did not expect to find an element matching selector '%s'. Please check the expected " +
-                                "markup from " +
-                                "%s.", selector, expectedMarkupPath), HTMLExtractor.exists(url, output, selector));
-                    }
-                } else if ("hasAttribute".equals(overriddenMethod)) {
-                    String attributeName = testCase.getString(JSON_CASE_ATTRIBUTE);
-                    boolean exists = true;
-                    if (testCase.has(JSON_CASE_POSITIVE)) {
-                        exists = testCase.getBoolean(JSON_CASE_POSITIVE);
-                    }
-                    assertTrue(String.format("Expected to find an element matching selector '%s'. Please check the expected markup " +
-                            "from %s.", selector, expectedMarkupPath), HTMLExtractor.exists(url, output, selector));
-                    if (exists) {
-                        assertTrue(String.format("Cannot find attribute '%s' on element matching selector '%s'. Please check the expected" +
-                                        " markup from %s.", attributeName, selector, expectedMarkupPath),
-                                HTMLExtractor.hasAttribute(url, output, selector, attributeName));
-                    } else {
-                        assertFalse(String.format("Did not expect to find attribute '%s' on element matching selector '%s'. Please check " +
-                                        "the expected markup from %s.", attributeName, selector, expectedMarkupPath),
-                                HTMLExtractor.hasAttribute(url, output, selector, attributeName));
-                    }
-                } else if ("hasAttributeValue".equals(overriddenMethod)) {
-                    String attributeName = testCase.getString(JSON_CASE_ATTRIBUTE);
-                    String attributeValue = testCase.getString(JSON_CASE_VALUE);
-                    boolean positive = true;
-                    if (testCase.has(JSON_CASE_POSITIVE)) {
-                        positive = testCase.getBoolean(JSON_CASE_POSITIVE);
-                    }
-                    assertTrue(String.format("Expected to find an element matching selector '%s'. Please check the expected markup " +
-                            "from %s.", selector, expectedMarkupPath), HTMLExtractor.exists(url, output, selector));
-                    if (positive) {
-                        assertTrue(String.format("Cannot find attribute '%s' on element matching selector '%s'. Please check the expected" +
-                                        " markup from %s.", attributeName, selector, expectedMarkupPath),
-                                HTMLExtractor.hasAttribute(url, output, selector, attributeName));
-                        assertTrue(String.format("Cannot find attribute '%s' on element matching selector '%s' with value '%s'. Please " +
-                                        "check the expected markup from %s.", attributeName,
-                                selector, attributeValue, expectedMarkupPath),
-                                HTMLExtractor.hasAttributeValue(url, output, selector, attributeName, attributeValue));
-                    } else {
-                        assertFalse(String.format("Did not expect to find attribute '%s' on element matching selector '%s'. Please check " +
-                                        "the expected markup from %s.", attributeName, selector, expectedMarkupPath),
-                                HTMLExtractor.hasAttribute(url, output, selector, attributeName));
-                        assertFalse(String.format("Did not expect to find attribute '%s' on element matching selector '%s' with value " +
-                                        "'%s'. Please check the expected markup from %s.", attributeName, selector, attributeValue,
-                                expectedMarkupPath),
-                                HTMLExtractor.hasAttributeValue(url, output, selector, attributeName, attributeValue));
-                    }
-                } else if ("hasChildren".equals(overriddenMethod)) {
-                    assertTrue(String.format("Expected to find an element matching selector '%s'. Please check the expected markup " +
-                            "from %s.", selector, expectedMarkupPath), HTMLExtractor.exists(url, output, selector));
-                    int expectedChildren = testCase.optInt(JSON_CASE_VALUE);
-                    assertTrue(String.format("Element matched by selector '%s' was expected to have %d children. Please check the " +
-                                    "expected markup from %s.", selector, expectedChildren, expectedMarkupPath),
-                            HTMLExtractor.hasChildren(url, output, selector, expectedChildren));
-                } else if ("hasClosingTag".equals(overriddenMethod)) {
-                    boolean hasClosingTag = true;
-                    if (testCase.has(JSON_CASE_POSITIVE)) {
-                        hasClosingTag = testCase.getBoolean(JSON_CASE_POSITIVE);
-                    }
-                    if (hasClosingTag) {
-                        assertTrue(String.format("Expected to find an element matching selector '%s' with a closing tag. Please check the" +
-                                        " expected markup from %s.", selector, expectedMarkupPath),
-                                HTMLExtractor.hasClosingTag(url, output, selector));
-                    } else {
-                        assertFalse(String.format("Did not expect that the element matching selector '%s' has a closing tag. Please check" +
-                                        " the expected markup from %s.", selector, expectedMarkupPath),
-                                HTMLExtractor.hasClosingTag(url, output, selector));
-                    }
-                }  else {
-                    fail("Unknown test method: " + overriddenMethod);
+            }
+
+            @Override
+            public void failed(final RuntimeException e) {
+                try {
+                    HTMLExtractor.load(url, new Callable<Document>() {
+                        @Override
+                        public Document call() {
+                            throw e;
+                        }
+                    });
+                } catch (RuntimeException cached) {
+                    // the failure is cached and reported by the tests using the url
+                } finally {
+                    permits.release();
                 }
             }
         };
+        try {
+            client.getContentAsync(url, expectedStatusCode, createDocumentHandler(url, System.nanoTime()), callback);
+        } catch (RuntimeException e) {
+            callback.failed(e);
+        }
+    }
+
+    /**
+     * Creates the handler parsing a response body into a document, while recording the fetch statistics of the {@code url}; the
+     * latency is measured from {@code start}.
+     */
+    private static ResponseHandler<Document> createDocumentHandler(final String url, final long start) {
+        return new ResponseHandler<Document>() {
+            @Override
+            public Document handle(InputStream body, String charset) throws IOException {
+                long headersReceived = System.nanoTime() - start;
+                TimingInputStream timingBody = new TimingInputStream(body);
+                DigestInputStream digestBody = new DigestInputStream(timingBody, createDigest());
+                Document document = HTMLExtractor.parseDocument(digestBody, charset, url);
+                fetches.put(url, new FetchStats(headersReceived + timingBody.getNanos(), timingBody.getBytes(),
+                        toHex(digestBody.getMessageDigest().digest())));
+                return document;
+            }
+        };
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("The SHA-1 algorithm is not available.", e);
+        }
     }
 
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Returns the latency, size and hash of the response last fetched for {@code url}.
+     *
+     * @return the fetch statistics, or {@code null} if the {@code url} wasn't fetched or was released
+     */
+    static FetchStats getFetchStats(String url) {
+        return fetches.get(url);
+    }
+
+    /**
+     * Discards the fetch statistics of {@code url}.
+     */
+    static void release(String url) {
+        fetches.remove(url);
+    }
 
 }
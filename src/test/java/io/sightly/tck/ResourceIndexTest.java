@@ -0,0 +1,129 @@
+/*******************************************************************************
+ * Copyright 2014 Adobe Systems Incorporated
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package io.sightly.tck;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ResourceIndexTest {
+
+    private static final String PREFIX = "testfiles/";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Map<String, String> files = new LinkedHashMap<String, String>();
+
+    @Before
+    public void setUp() {
+        files.put("other/ignored.txt", "ignored");
+        files.put("testfiles/definitions/a.json", "{\"suite\": \"a\"}");
+        files.put("testfiles/definitions/b.json", "{\"suite\": \"b\"}");
+        files.put("testfiles/scripts/page.html", "<div>\u00e9t\u00e9</div>");
+    }
+
+    @Test
+    public void testDirectory() throws IOException {
+        File codeSource = folder.newFolder("classes");
+        for (Map.Entry<String, String> file : files.entrySet()) {
+            FileUtils.writeStringToFile(new File(codeSource, file.getKey()), file.getValue(), "UTF-8");
+        }
+        assertIndex(ResourceIndex.create(codeSource, PREFIX));
+    }
+
+    @Test
+    public void testJar() throws IOException {
+        File codeSource = new File(folder.getRoot(), "tck.jar");
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(codeSource));
+        try {
+            for (String directory : new String[] {"other/", "testfiles/", "testfiles/definitions/", "testfiles/scripts/"}) {
+                out.putNextEntry(new JarEntry(directory));
+                out.closeEntry();
+            }
+            for (Map.Entry<String, String> file : files.entrySet()) {
+                out.putNextEntry(new JarEntry(file.getKey()));
+                out.write(file.getValue().getBytes("UTF-8"));
+                out.closeEntry();
+            }
+        } finally {
+            out.close();
+        }
+        assertIndex(ResourceIndex.create(codeSource, PREFIX));
+    }
+
+    @Test
+    public void testMissingPrefix() throws IOException {
+        assertTrue(ResourceIndex.create(folder.newFolder("empty"), PREFIX).list("").isEmpty());
+    }
+
+    private void assertIndex(ResourceIndex index) throws IOException {
+        assertEquals(Arrays.asList("testfiles/", "testfiles/definitions/", "testfiles/definitions/a.json", "testfiles/definitions/b.json",
+                "testfiles/scripts/", "testfiles/scripts/page.html"), getNames(index.list("")));
+        assertEquals(Arrays.asList("testfiles/definitions/", "testfiles/definitions/a.json", "testfiles/definitions/b.json"),
+                getNames(index.list("testfiles/definitions/")));
+        assertNull(index.get("other/ignored.txt"));
+        assertNull(index.get("testfiles/missing.html"));
+        assertTrue(index.get("testfiles/scripts/").isDirectory());
+        for (Map.Entry<String, String> file : files.entrySet()) {
+            if (!file.getKey().startsWith(PREFIX)) {
+                continue;
+            }
+            ResourceIndex.Resource resource = index.get(file.getKey());
+            byte[] content = file.getValue().getBytes("UTF-8");
+            CRC32 crc = new CRC32();
+            crc.update(content);
+            assertFalse(resource.isDirectory());
+            assertEquals(content.length, resource.getSize());
+            assertEquals(crc.getValue(), resource.getCrc());
+            InputStream in = resource.open();
+            try {
+                assertEquals(file.getValue(), IOUtils.toString(in, "UTF-8"));
+            } finally {
+                in.close();
+            }
+        }
+    }
+
+    private static List<String> getNames(List<ResourceIndex.Resource> resources) {
+        List<String> names = new ArrayList<String>();
+        for (ResourceIndex.Resource resource : resources) {
+            names.add(resource.getName());
+        }
+        return names;
+    }
+}
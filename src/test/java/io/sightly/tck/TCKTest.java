@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * Copyright 2014 Adobe Systems Incorporated
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package io.sightly.tck;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TCKTest {
+
+    // whole seconds, as some file systems don't store the milliseconds
+    private static final long PAST = 1000000000000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testIncrementalExtraction() throws IOException {
+        File source = folder.newFolder("source");
+        write(new File(source, "testfiles/a.txt"), "a");
+        write(new File(source, "testfiles/sub/b.txt"), "b");
+        write(new File(source, "testfiles/c.txt"), "c");
+        ResourceIndex resources = ResourceIndex.create(source, "testfiles/");
+        File target = folder.newFolder("target");
+        File a = new File(target, "testfiles/a.txt");
+        File b = new File(target, "testfiles/sub/b.txt");
+        File c = new File(target, "testfiles/c.txt");
+
+        assertEquals(3, TCK.extract(resources, target));
+        assertEquals("a", read(a));
+        assertEquals("b", read(b));
+        assertEquals("c", read(c));
+        for (File file : new File[] {a, b, c}) {
+            assertTrue(file.setLastModified(PAST));
+        }
+        assertEquals(0, TCK.extract(resources, target));
+        assertEquals(PAST, a.lastModified());
+        assertEquals(PAST, b.lastModified());
+        assertEquals(PAST, c.lastModified());
+
+        // an extracted file modified without changing its size, and a resource which changed since the previous extraction
+        write(b, "x");
+        assertTrue(b.setLastModified(PAST));
+        write(new File(source, "testfiles/c.txt"), "cc");
+        assertEquals(2, TCK.extract(resources, target));
+        assertEquals(PAST, a.lastModified());
+        assertEquals("b", read(b));
+        assertEquals("cc", read(c));
+        assertTrue(b.lastModified() > PAST);
+        assertTrue(c.lastModified() > PAST);
+    }
+
+    private static void write(File file, String content) throws IOException {
+        FileUtils.writeStringToFile(file, content, "UTF-8");
+    }
+
+    private static String read(File file) throws IOException {
+        return FileUtils.readFileToString(file, "UTF-8");
+    }
+}
@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * Copyright 2014 Adobe Systems Incorporated
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package io.sightly.tck.assertions;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.json.JSONObject;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import io.sightly.tck.html.HTMLExtractor;
+import io.sightly.tck.plan.PlannedCase;
+import io.sightly.tck.plan.TestPlan;
+import junit.framework.AssertionFailedError;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class AssertionTest {
+
+    private static final String URL = "assertion-test";
+    private static final String MARKUP = "<div id='a' title='t'><p>one</p><p>two</p></div><br id='b'><span id='c'></span>";
+
+    @BeforeClass
+    public static void setUp() {
+        HTMLExtractor.parse(URL, MARKUP);
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        HTMLExtractor.release(URL);
+    }
+
+    @Test
+    public void testPassingAssertions() {
+        List<PlannedCase> cases = compile("{'method': 'innerHTMLEquals', 'selector': '#c', 'value': ''}",
+                "{'method': 'contains', 'selector': '#a', 'value': 'two'}",
+                "{'method': 'exists', 'selector': '#a'}",
+                "{'method': 'exists', 'selector': '#d', 'positive': false}",
+                "{'method': 'hasAttribute', 'selector': '#a', 'attribute': 'title'}",
+                "{'method': 'hasAttribute', 'selector': '#a', 'attribute': 'lang', 'positive': false}",
+                "{'method': 'hasAttributeValue', 'selector': '#a', 'attribute': 'title', 'value': 't'}",
+                "{'method': 'hasAttributeValue', 'selector': '#b', 'attribute': 'title', 'value': 't', 'positive': false}",
+                "{'method': 'hasChildren', 'selector': '#a', 'value': 2}",
+                "{'method': 'hasClosingTag', 'selector': '#c'}",
+                "{'method': 'hasClosingTag', 'selector': '#b', 'positive': false}");
+        for (PlannedCase testCase : cases) {
+            Assertion.compile(testCase).evaluate(URL);
+        }
+    }
+
+    @Test
+    public void testFailureMessages() {
+        assertFailure("{'method': 'innerHTMLEquals', 'selector': '#d', 'value': ''}",
+                "Expected to find an element matching selector '#d'. Please check the expected markup from a.html.");
+        assertFailure("{'method': 'innerHTMLEquals', 'selector': '#c', 'value': 'x'}",
+                "Expected value 'x' for selector '#c'. Instead we got ''. Please check the expected markup from a.html.");
+        assertFailure("{'method': 'contains', 'selector': '#a', 'value': 'three'}",
+                "Missing content for selector '#a'. Please check the expected markup from a.html.");
+        assertFailure("{'method': 'exists', 'selector': '#a', 'positive': false}",
+                "Did not expect to find an element matching selector '#a'. Please check the expected markup from a.html.");
+        assertFailure("{'method': 'hasAttribute', 'selector': '#a', 'attribute': 'lang'}",
+                "Cannot find attribute 'lang' on element matching selector '#a'. Please check the expected markup from a.html.");
+        assertFailure("{'method': 'hasAttributeValue', 'selector': '#a', 'attribute': 'title', 'value': 'u'}",
+                "Cannot find attribute 'title' on element matching selector '#a' with value 'u'. Please check the expected markup from " +
+                        "a.html.");
+        assertFailure("{'method': 'hasAttributeValue', 'selector': '#a', 'attribute': 'title', 'value': 't', 'positive': false}",
+                "Did not expect to find attribute 'title' on element matching selector '#a'. Please check the expected markup from " +
+                        "a.html.");
+        assertFailure("{'method': 'hasChildren', 'selector': '#a', 'value': 3}",
+                "Element matched by selector '#a' was expected to have 3 children. Please check the expected markup from a.html.");
+        assertFailure("{'method': 'hasClosingTag', 'selector': '#c', 'positive': false}",
+                "Did not expect that the element matching selector '#c' has a closing tag. Please check the expected markup from a.html.");
+    }
+
+    private static void assertFailure(String definition, String message) {
+        Assertion assertion = Assertion.compile(compile(definition).get(0));
+        try {
+            assertion.evaluate(URL);
+            fail("Expected " + definition + " to fail.");
+        } catch (AssertionFailedError e) {
+            assertEquals(message, e.getMessage());
+        }
+    }
+
+    private static List<PlannedCase> compile(String... cases) {
+        StringBuilder definition = new StringBuilder("{'suite': 's', 'url': '/a.html', 'expectedMarkup': 'a.html', 'groups': [{'name': " +
+                "'g', 'cases': [");
+        for (int i = 0; i < cases.length; i++) {
+            definition.append(i > 0 ? ", " : "").append(cases[i]);
+        }
+        definition.append("]}]}");
+        List<PlannedCase> compiled = TestPlan.compile(Collections.singletonList(new JSONObject(definition.toString()))).getCases();
+        assertEquals(cases.length, compiled.size());
+        return compiled;
+    }
+}
@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * Copyright 2014 Adobe Systems Incorporated
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package io.sightly.tck.bench;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import io.sightly.tck.http.Client;
+import io.sightly.tck.http.StubServer;
+import io.sightly.tck.metrics.Metrics;
+
+import static org.junit.Assert.assertEquals;
+
+public class RenderBenchmarkTest {
+
+    private static final byte[] BODY = "<p>benchmark</p>".getBytes();
+
+    private final AtomicInteger flakyRequests = new AtomicInteger();
+
+    @Rule
+    public StubServer server = new StubServer(new HttpHandler() {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            // every other request for the flaky script fails
+            boolean fail = exchange.getRequestURI().getPath().equals("/flaky") && flakyRequests.incrementAndGet() % 2 == 0;
+            StubServer.respond(exchange, fail ? 500 : 200, BODY);
+        }
+    });
+
+    private Client client;
+
+    @Before
+    public void setUp() {
+        client = new Client();
+        Metrics.reset();
+    }
+
+    @After
+    public void tearDown() {
+        client.shutdown();
+        Metrics.reset();
+    }
+
+    @Test
+    public void testRun() throws InterruptedException {
+        String url = server.getUrl();
+        Map<String, Integer> scripts = new LinkedHashMap<String, Integer>();
+        scripts.put(url + "/ok", 200);
+        scripts.put(url + "/flaky", 200);
+        List<ScriptStats> stats = new RenderBenchmark(client, 3, 4, 1).run(scripts);
+        assertEquals(2, stats.size());
+
+        ScriptStats ok = stats.get(0);
+        assertEquals(url + "/ok", ok.getUrl());
+        assertEquals(4, ok.getRequests());
+        assertEquals(0, ok.getErrors());
+        // the warm-up requests are not measured
+        assertEquals(4 * BODY.length, ok.getWireBytes());
+        assertEquals(4 * BODY.length, ok.getDecodedBytes());
+
+        // 3 warm-up requests, then the measured requests 4 to 7, of which 4 and 6 fail
+        ScriptStats flaky = stats.get(1);
+        assertEquals(4, flaky.getRequests());
+        assertEquals(2, flaky.getErrors());
+        assertEquals(2 * BODY.length, flaky.getWireBytes());
+        // only the successful requests have latencies, so no percentile is the failed requests' -1 marker
+        assertEquals(true, flaky.getPercentile(0) > 0);
+        assertEquals(7, flakyRequests.get());
+    }
+}
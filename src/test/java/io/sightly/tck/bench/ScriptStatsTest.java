@@ -0,0 +1,66 @@
+/*******************************************************************************
+ * Copyright 2014 Adobe Systems Incorporated
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package io.sightly.tck.bench;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ScriptStatsTest {
+
+    private static final long MS = 1000000L;
+
+    @Test
+    public void testStats() {
+        long[] latencies = new long[10];
+        for (int i = 0; i < latencies.length; i++) {
+            // unsorted on purpose: 10, 9, ..., 1 ms
+            latencies[i] = (latencies.length - i) * MS;
+        }
+        ScriptStats stats = new ScriptStats("http://localhost/a.html", latencies, 2, 2000 * MS, 300, 900);
+        assertEquals(12, stats.getRequests());
+        assertEquals(2, stats.getErrors());
+        // nearest rank: ceil(p / 100 * 10)
+        assertEquals(1 * MS, stats.getPercentile(0));
+        assertEquals(1 * MS, stats.getPercentile(10));
+        assertEquals(5 * MS, stats.getPercentile(50));
+        assertEquals(6 * MS, stats.getPercentile(51));
+        assertEquals(9 * MS, stats.getPercentile(90));
+        assertEquals(10 * MS, stats.getPercentile(99));
+        assertEquals(10 * MS, stats.getPercentile(100));
+        assertEquals(10 * MS, stats.getMax());
+        assertEquals(6.0, stats.getRequestsPerSecond(), 1e-9);
+
+        JSONObject json = stats.toJSON();
+        assertEquals(12, json.getInt("requests"));
+        assertEquals(5.0, json.getDouble("p50"), 1e-9);
+        assertEquals(9.0, json.getDouble("p90"), 1e-9);
+        assertEquals(10.0, json.getDouble("p99"), 1e-9);
+        assertEquals(10.0, json.getDouble("max"), 1e-9);
+        assertEquals(300, json.getLong("wireBytes"));
+        assertEquals(900, json.getLong("decodedBytes"));
+    }
+
+    @Test
+    public void testNoSuccessfulRequests() {
+        ScriptStats stats = new ScriptStats("http://localhost/a.html", new long[0], 3, 0, 0, 0);
+        assertEquals(3, stats.getRequests());
+        assertEquals(0, stats.getPercentile(50));
+        assertEquals(0, stats.getMax());
+        assertEquals(0.0, stats.getRequestsPerSecond(), 0);
+    }
+}
@@ -0,0 +1,229 @@
+/*******************************************************************************
+ * Copyright 2014 Adobe Systems Incorporated
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package io.sightly.tck.cache;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SingleFlightCacheTest {
+
+    @Test
+    public void testConcurrentCallersShareOneComputation() throws Exception {
+        final SingleFlightCache<String, String> cache = new SingleFlightCache<String, String>();
+        final AtomicInteger loads = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        final Callable<String> loader = new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                loads.incrementAndGet();
+                Thread.sleep(50);
+                return "value";
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<Future<String>>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        start.await();
+                        return cache.get("url", loader);
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<String> result : results) {
+                assertEquals("value", result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testFailuresAreShared() {
+        SingleFlightCache<String, String> cache = new SingleFlightCache<String, String>();
+        final AtomicInteger loads = new AtomicInteger();
+        Callable<String> loader = new Callable<String>() {
+            @Override
+            public String call() {
+                loads.incrementAndGet();
+                throw new IllegalStateException("failed");
+            }
+        };
+        RuntimeException first = null;
+        RuntimeException second = null;
+        try {
+            cache.get("url", loader);
+            fail("Expected an exception.");
+        } catch (IllegalStateException e) {
+            first = e;
+        }
+        try {
+            cache.get("url", loader);
+            fail("Expected an exception.");
+        } catch (IllegalStateException e) {
+            second = e;
+        }
+        assertSame(first, second);
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void testCheckedExceptionsAreWrapped() {
+        SingleFlightCache<String, String> cache = new SingleFlightCache<String, String>();
+        try {
+            cache.get("url", new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    throw new IOException("failed");
+                }
+            });
+            fail("Expected an exception.");
+        } catch (CacheLoaderException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void testRemove() {
+        SingleFlightCache<String, String> cache = new SingleFlightCache<String, String>();
+        final AtomicInteger loads = new AtomicInteger();
+        Callable<String> loader = new Callable<String>() {
+            @Override
+            public String call() {
+                return "value-" + loads.incrementAndGet();
+            }
+        };
+        assertEquals("value-1", cache.get("url", loader));
+        assertEquals("value-1", cache.get("url", loader));
+        cache.remove("url");
+        assertEquals("value-2", cache.get("url", loader));
+    }
+
+    @Test
+    public void testEntriesBound() {
+        SingleFlightCache<String, String> cache = new SingleFlightCache<String, String>(2, 0, null);
+        cache.get("a", constant("a"));
+        cache.get("b", constant("b"));
+        cache.get("a", constant("a"));
+        cache.get("c", constant("c"));
+        assertEquals(2, cache.size());
+        assertTrue(cache.contains("a"));
+        assertTrue(cache.contains("c"));
+        assertFalse(cache.contains("b"));
+    }
+
+    @Test
+    public void testWeightBound() {
+        SingleFlightCache<String, String> cache = new SingleFlightCache<String, String>(0, 10, new Weigher<String>() {
+            @Override
+            public long weigh(String value) {
+                return value.length();
+            }
+        });
+        cache.get("a", constant("aaaa"));
+        cache.get("b", constant("bbbb"));
+        assertEquals(8, cache.weight());
+        cache.get("c", constant("cccc"));
+        assertEquals(8, cache.weight());
+        assertFalse(cache.contains("a"));
+        cache.get("d", constant("dddddddddddddddd"));
+        assertEquals(1, cache.size());
+        assertEquals(16, cache.weight());
+        cache.remove("d");
+        assertEquals(0, cache.weight());
+    }
+
+    @Test
+    public void testPinnedEntriesAreNotEvicted() {
+        SingleFlightCache<String, String> cache = new SingleFlightCache<String, String>(1, 0, null);
+        final AtomicInteger loads = new AtomicInteger();
+        Callable<String> loader = new Callable<String>() {
+            @Override
+            public String call() {
+                return "page-" + loads.incrementAndGet();
+            }
+        };
+        // a page whose tests are still pending is pinned, so loading other pages doesn't evict it and it's never fetched twice
+        assertEquals("page-1", cache.get("pending", loader, true));
+        cache.get("b", constant("b"));
+        cache.get("c", constant("c"));
+        assertEquals(2, cache.size());
+        assertTrue(cache.contains("pending"));
+        assertFalse(cache.contains("b"));
+        assertEquals("page-1", cache.get("pending", loader, true));
+        assertEquals("page-1", cache.getIfPresent("pending"));
+        assertEquals(1, loads.get());
+        cache.remove("pending");
+        cache.get("d", constant("d"));
+        assertEquals(1, cache.size());
+        assertFalse(cache.contains("c"));
+    }
+
+    @Test
+    public void testPinnedEntriesDontCountAgainstWeightBound() {
+        SingleFlightCache<String, String> cache = new SingleFlightCache<String, String>(0, 10, new Weigher<String>() {
+            @Override
+            public long weigh(String value) {
+                return value.length();
+            }
+        });
+        cache.get("a", constant("aaaaaaaaaaaa"), true);
+        cache.get("b", constant("bbbbbb"));
+        assertEquals(6, cache.weight());
+        assertEquals(2, cache.size());
+        cache.get("c", constant("cccccc"));
+        assertEquals(6, cache.weight());
+        assertTrue(cache.contains("a"));
+        assertFalse(cache.contains("b"));
+        // pinning an entry which is already cached removes its weight from the bound
+        cache.get("c", constant("cccccc"), true);
+        assertEquals(0, cache.weight());
+        cache.remove("a");
+        cache.remove("c");
+        assertEquals(0, cache.weight());
+        assertEquals(0, cache.size());
+    }
+
+    private static Callable<String> constant(final String value) {
+        return new Callable<String>() {
+            @Override
+            public String call() {
+                return value;
+            }
+        };
+    }
+}
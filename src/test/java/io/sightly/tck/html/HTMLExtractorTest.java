@@ -15,9 +15,30 @@
  ******************************************************************************/
 package io.sightly.tck.html;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
 import org.junit.Test;
 
+import io.sightly.tck.metrics.Metrics;
+import io.sightly.tck.metrics.Phase;
+
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -104,5 +125,160 @@ public class HTMLExtractorTest {
             fail(sb.toString());
         }
     }
-}
 
+    @Test
+    public void testPlannedSelectors() {
+        final String markup = "<div id='test' title='t'><p class='a'>one</p><p class='a'>two</p><br></div><span id='empty'></span>";
+        String[] selectors = new String[] {"#test", ".a", "#test > p", "div p:eq(1)", "br", "#missing", "#empty"};
+        HTMLExtractor.plan("planned-t01", Arrays.asList(selectors));
+        HTMLExtractor.load("planned-t01", new Callable<Document>() {
+            @Override
+            public Document call() {
+                return Jsoup.parse(markup);
+            }
+        });
+        for (String selector : selectors) {
+            assertEquals(selector, HTMLExtractor.innerHTML("unplanned-t01", markup, selector), HTMLExtractor.innerHTML("planned-t01",
+                    selector));
+            assertEquals(selector, HTMLExtractor.exists("unplanned-t01", markup, selector), HTMLExtractor.exists("planned-t01", selector));
+        }
+        assertTrue(HTMLExtractor.hasAttributeValue("planned-t01", "#test", "title", "t"));
+        assertTrue(HTMLExtractor.hasChildren("planned-t01", "#test", 3));
+        assertFalse(HTMLExtractor.hasClosingTag("planned-t01", "br"));
+        HTMLExtractor.release("planned-t01");
+        HTMLExtractor.release("unplanned-t01");
+    }
+
+    @Test
+    public void testSelectorsPlannedAfterLoading() {
+        String markup = "<div id='test'><p class='a'>one</p></div>";
+        HTMLExtractor.parse("planned-t02", markup);
+        Metrics.reset();
+        HTMLExtractor.plan("planned-t02", Arrays.asList("#test", ".a"));
+        // the document was already loaded, so the planned selectors are evaluated right away
+        assertEquals(1, Metrics.getHistogram(Phase.BATCH_EVALUATION).getCount());
+        assertEquals(0, Metrics.getHistogram(Phase.EVALUATION).getCount());
+        assertEquals("one", HTMLExtractor.innerHTML("planned-t02", ".a"));
+        HTMLExtractor.release("planned-t02");
+        Metrics.reset();
+    }
+
+    @Test
+    public void testPlannedSelectorsWithUnparseableSelector() {
+        CachedDocument document = new CachedDocument(Jsoup.parse("<div id='test'><p class='a'>one</p></div>"));
+        SelectorCache selectorCache = new SelectorCache(16);
+        document.selectAll(Arrays.asList("div[", ".a", "#test"), selectorCache);
+        assertEquals(3, selectorCache.getMisses());
+        // the valid selectors were evaluated by the batch traversal, so selecting them doesn't go through the selector cache again
+        assertEquals("one", document.select(".a", selectorCache).text());
+        assertEquals(1, document.select("#test", selectorCache).size());
+        assertEquals(0, selectorCache.getHits());
+        try {
+            document.select("div[", selectorCache);
+            fail("Expected an exception for an invalid selector.");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testLoadedDocumentIsKeptUntilReleased() {
+        final AtomicInteger loads = new AtomicInteger();
+        Callable<Document> loader = new Callable<Document>() {
+            @Override
+            public Document call() {
+                loads.incrementAndGet();
+                return Jsoup.parse("<div id='test'>one</div>");
+            }
+        };
+        HTMLExtractor.load("pinned-t01", loader);
+        HTMLExtractor.load("pinned-t01", loader);
+        assertEquals("one", HTMLExtractor.innerHTML("pinned-t01", "#test"));
+        assertEquals(1, loads.get());
+        HTMLExtractor.release("pinned-t01");
+        try {
+            HTMLExtractor.innerHTML("pinned-t01", "#test");
+            fail("Expected the released document to be discarded.");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testSelectorIsEvaluatedOncePerDocument() {
+        CountingSelectorCache selectorCache = new CountingSelectorCache(null);
+        CachedDocument document = new CachedDocument(Jsoup.parse("<div id='test'><p class='a'>one</p><p class='a'>two</p></div>"));
+        Elements elements = document.select(".a", selectorCache);
+        assertEquals(2, elements.size());
+        assertSame(elements, document.select(".a", selectorCache));
+        assertEquals(1, selectorCache.traversals.get());
+        document.select("#test", selectorCache);
+        assertEquals(2, selectorCache.traversals.get());
+
+        // the matches are memoized per document
+        CachedDocument other = new CachedDocument(Jsoup.parse("<p class='a'>three</p>"));
+        assertNotSame(elements, other.select(".a", selectorCache));
+        assertEquals(3, selectorCache.traversals.get());
+    }
+
+    @Test
+    public void testConcurrentSelectsShareOneTraversal() throws Exception {
+        final int threads = 8;
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountingSelectorCache selectorCache = new CountingSelectorCache(release);
+        final CachedDocument document = new CachedDocument(Jsoup.parse("<div id='test'><p class='a'>one</p></div>"));
+        final CountDownLatch selecting = new CountDownLatch(threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Elements>> futures = new ArrayList<Future<Elements>>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(new Callable<Elements>() {
+                    @Override
+                    public Elements call() {
+                        selecting.countDown();
+                        return document.select(".a", selectorCache);
+                    }
+                }));
+            }
+            assertTrue(selecting.await(10, TimeUnit.SECONDS));
+            // the first traversal is held until all the threads asked for the selector
+            Thread.sleep(50);
+            release.countDown();
+            Elements elements = futures.get(0).get(10, TimeUnit.SECONDS);
+            assertEquals("one", elements.text());
+            for (Future<Elements> future : futures) {
+                assertSame(elements, future.get(10, TimeUnit.SECONDS));
+            }
+            assertEquals(1, selectorCache.traversals.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Counts the selections, each of which traverses the document; the selections wait for the {@code release} latch, if any.
+     */
+    private static class CountingSelectorCache extends SelectorCache {
+
+        private final AtomicInteger traversals = new AtomicInteger();
+        private final CountDownLatch release;
+
+        CountingSelectorCache(CountDownLatch release) {
+            super(16);
+            this.release = release;
+        }
+
+        @Override
+        public Elements select(String selector, Element root) {
+            traversals.incrementAndGet();
+            if (release != null) {
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return super.select(selector, root);
+        }
+    }
+}
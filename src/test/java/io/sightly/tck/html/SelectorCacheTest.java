@@ -0,0 +1,74 @@
+/*******************************************************************************
+ * Copyright 2014 Adobe Systems Incorporated
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package io.sightly.tck.html;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class SelectorCacheTest {
+
+    private static final String MARKUP = "<div id='test' class='a b'><p title='t'>one</p><p>two</p><span data-x='1'/></div><ul><li>1</li>" +
+            "<li>2</li></ul>";
+
+    private static final String[] SELECTORS = new String[] {
+            "#test", "div#test", ".a.b", "#test > p", "p[title]", "p[title=t]", "span[data-x]", "ul li:eq(1)", "div p, ul li",
+            "#test p:contains(two)", " #test ", "#missing"
+    };
+
+    @Test
+    public void testSelectIsEquivalentToElementSelect() {
+        Document document = Jsoup.parse(MARKUP);
+        SelectorCache cache = new SelectorCache(64);
+        for (int i = 0; i < 2; i++) {
+            for (String selector : SELECTORS) {
+                assertEquals(selector, document.select(selector).outerHtml(), cache.select(selector, document).outerHtml());
+            }
+        }
+        assertEquals(SELECTORS.length, cache.getMisses());
+        assertEquals(SELECTORS.length, cache.getHits());
+    }
+
+    @Test
+    public void testEviction() {
+        Document document = Jsoup.parse(MARKUP);
+        SelectorCache cache = new SelectorCache(2);
+        cache.select("#test", document);
+        cache.select("p", document);
+        cache.select("#test", document);
+        cache.select("li", document);
+        assertEquals(2, cache.size());
+        cache.select("#test", document);
+        assertEquals(2, cache.getHits());
+        cache.select("p", document);
+        assertEquals(4, cache.getMisses());
+    }
+
+    @Test
+    public void testInvalidSelector() {
+        Document document = Jsoup.parse(MARKUP);
+        SelectorCache cache = new SelectorCache(2);
+        try {
+            cache.select("div[", document);
+            fail("Expected an exception for an invalid selector.");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
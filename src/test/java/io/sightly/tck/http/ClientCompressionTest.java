@@ -0,0 +1,153 @@
+/*******************************************************************************
+ * Copyright 2014 Adobe Systems Incorporated
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package io.sightly.tck.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import io.sightly.tck.metrics.Metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ClientCompressionTest {
+
+    private static final String BODY;
+
+    static {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            body.append("<div class=\"item\">\u00e9l\u00e9ment ").append(i).append("</div>\n");
+        }
+        BODY = body.toString();
+    }
+
+    private static final String ETAG = "\"v1\"";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Rule
+    public StubServer server = new StubServer(new HttpHandler() {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            String path = exchange.getRequestURI().getPath();
+            exchange.getResponseHeaders().set("ETag", ETAG);
+            if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                StubServer.respond(exchange, 304, new byte[0]);
+                return;
+            }
+            byte[] body = BODY.getBytes("UTF-8");
+            if (acceptEncoding != null) {
+                String encoding = path.substring(1);
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                OutputStream out;
+                if ("gzip".equals(encoding)) {
+                    out = new GZIPOutputStream(bytes);
+                } else {
+                    // "deflate" is a zlib stream, "raw" a deflate stream without the zlib wrapper
+                    out = new DeflaterOutputStream(bytes, new Deflater(Deflater.DEFAULT_COMPRESSION, "raw".equals(encoding)));
+                    encoding = "deflate";
+                }
+                out.write(body);
+                out.close();
+                body = bytes.toByteArray();
+                exchange.getResponseHeaders().set("Content-Encoding", encoding);
+            }
+            exchange.getResponseHeaders().set("Content-Type", "text/html; charset=UTF-8");
+            StubServer.respond(exchange, 200, body);
+        }
+    });
+
+    private Client client;
+
+    @Before
+    public void setUp() {
+        client = new Client();
+        Metrics.reset();
+    }
+
+    @After
+    public void tearDown() {
+        client.shutdown();
+        Metrics.reset();
+    }
+
+    @Test
+    public void testCompression() {
+        String url = server.getUrl();
+        assertEquals(BODY, client.getStringContent(url + "/gzip", 200));
+        long decoded = Metrics.getDecodedBytes();
+        assertEquals(decoded, Metrics.getWireBytes());
+
+        client.setCompression(true);
+        for (String encoding : new String[] {"gzip", "deflate", "raw"}) {
+            Metrics.reset();
+            assertEquals(BODY, client.getStringContent(url + "/" + encoding, 200));
+            assertEquals(decoded, Metrics.getDecodedBytes());
+            assertTrue(encoding, Metrics.getWireBytes() < decoded / 2);
+        }
+    }
+
+    @Test
+    public void testRecordRevalidatedResponse() throws IOException {
+        String url = server.getUrl() + "/gzip";
+        ResponseCache cache = new ResponseCache(folder.newFolder("cache"), ResponseCache.DEFAULT_MAX_SIZE);
+        client.setCompression(true);
+        client.setResponseCache(cache);
+        assertEquals(BODY, client.getStringContent(url, 200));
+        assertEquals("gzip", cache.get(url, null).getContentEncoding());
+
+        File archiveFile = new File(folder.getRoot(), "responses.archive");
+        ResponseRecorder recorder = ResponseRecorder.create(archiveFile);
+        client.setRecorder(recorder);
+        // revalidated with a 304, which has no Content-Encoding header
+        assertEquals(BODY, client.getStringContent(url, 200));
+        recorder.close();
+
+        ResponseArchive archive = ResponseArchive.open(archiveFile);
+        assertEquals("gzip", archive.get(url).getContentEncoding());
+        Client replayClient = new Client();
+        try {
+            replayClient.setReplayArchive(archive);
+            assertEquals(BODY, replayClient.getStringContent(url, 200));
+        } finally {
+            replayClient.shutdown();
+        }
+    }
+
+    @Test(expected = ClientException.class)
+    public void testDecodedBodySizeLimit() {
+        client.setCompression(true);
+        client.setMaxBodySize(1024);
+        client.getStringContent(server.getUrl() + "/gzip", 200);
+    }
+}
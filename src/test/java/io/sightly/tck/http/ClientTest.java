@@ -0,0 +1,196 @@
+/*******************************************************************************
+ * Copyright 2014 Adobe Systems Incorporated
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package io.sightly.tck.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ClientTest {
+
+    private static final String BODY = StringUtils.repeat("x", 100);
+    private static final String TEXT = "caf\u00e9";
+    private static final ResponseHandler<String> STRING_HANDLER = new ResponseHandler<String>() {
+        @Override
+        public String handle(InputStream body, String charset) throws IOException {
+            return IOUtils.toString(body, charset);
+        }
+    };
+
+    @Rule
+    public StubServer server = new StubServer(new HttpHandler() {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            String path = exchange.getRequestURI().getPath();
+            if ("/sized".equals(path)) {
+                StubServer.respond(exchange, 200, BODY.getBytes("UTF-8"));
+            } else if ("/chunked".equals(path)) {
+                StubServer.respondChunked(exchange, 200, BODY.getBytes("UTF-8"));
+            } else if ("/latin".equals(path)) {
+                exchange.getResponseHeaders().set("Content-Type", "text/html; charset=ISO-8859-1");
+                StubServer.respond(exchange, 200, TEXT.getBytes("ISO-8859-1"));
+            } else if ("/default".equals(path)) {
+                exchange.getResponseHeaders().set("Content-Type", "text/html");
+                StubServer.respond(exchange, 200, TEXT.getBytes("UTF-8"));
+            } else {
+                StubServer.respond(exchange, 200, TEXT.getBytes("UTF-8"));
+            }
+        }
+    });
+
+    private Client client;
+    private String url;
+
+    @Before
+    public void setUp() {
+        client = new Client();
+        url = server.getUrl();
+    }
+
+    @After
+    public void tearDown() {
+        client.shutdown();
+    }
+
+    @Test
+    public void testMaxBodySizeContentLength() {
+        client.setMaxBodySize(50);
+        final AtomicBoolean handled = new AtomicBoolean();
+        try {
+            client.getContent(url + "/sized", 200, new ResponseHandler<String>() {
+                @Override
+                public String handle(InputStream body, String charset) {
+                    handled.set(true);
+                    return null;
+                }
+            });
+            fail("Expected a ClientException.");
+        } catch (ClientException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("has 100 bytes, exceeding the maximum size of 50 bytes"));
+        }
+        // the declared Content-Length is rejected before the body is read
+        assertFalse(handled.get());
+    }
+
+    @Test
+    public void testMaxBodySizeStreamed() {
+        client.setMaxBodySize(50);
+        try {
+            client.getStringContent(url + "/chunked", 200);
+            fail("Expected a ClientException.");
+        } catch (ClientException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("exceeds the maximum size of 50 bytes"));
+        }
+    }
+
+    @Test
+    public void testMaxBodySizeNotExceeded() {
+        client.setMaxBodySize(BODY.length());
+        assertEquals(BODY, client.getStringContent(url + "/sized", 200));
+        assertEquals(BODY, client.getStringContent(url + "/chunked", 200));
+    }
+
+    @Test
+    public void testCharset() {
+        assertEquals("ISO-8859-1", getCharset(url + "/latin"));
+        assertEquals(TEXT, client.getStringContent(url + "/latin", 200));
+    }
+
+    @Test
+    public void testDefaultCharset() {
+        assertEquals(Client.DEFAULT_CHARSET, getCharset(url + "/default"));
+        assertEquals(TEXT, client.getStringContent(url + "/default", 200));
+        assertEquals(Client.DEFAULT_CHARSET, getCharset(url + "/plain"));
+        assertEquals(TEXT, client.getStringContent(url + "/plain", 200));
+    }
+
+    @Test
+    public void testGetContentAsync() throws Exception {
+        final AtomicReference<String> completed = new AtomicReference<String>();
+        final CountDownLatch done = new CountDownLatch(1);
+        Future<String> future = client.getContentAsync(url + "/sized", 200, STRING_HANDLER, new ResponseCallback<String>() {
+            @Override
+            public void completed(String content) {
+                completed.set(content);
+                done.countDown();
+            }
+
+            @Override
+            public void failed(RuntimeException e) {
+                done.countDown();
+            }
+        });
+        assertEquals(BODY, future.get(10, TimeUnit.SECONDS));
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(BODY, completed.get());
+    }
+
+    @Test
+    public void testGetContentAsyncFailure() throws Exception {
+        final AtomicReference<RuntimeException> failure = new AtomicReference<RuntimeException>();
+        final CountDownLatch done = new CountDownLatch(1);
+        Future<String> future = client.getContentAsync(url + "/sized", 404, STRING_HANDLER, new ResponseCallback<String>() {
+            @Override
+            public void completed(String content) {
+                done.countDown();
+            }
+
+            @Override
+            public void failed(RuntimeException e) {
+                failure.set(e);
+                done.countDown();
+            }
+        });
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            fail("Expected the request to fail.");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof ClientException);
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertTrue(failure.get() instanceof ClientException);
+        assertTrue(failure.get().getMessage(), failure.get().getMessage().contains("Received status code 200, expected 404"));
+    }
+
+    private String getCharset(String url) {
+        return client.getContent(url, 200, new ResponseHandler<String>() {
+            @Override
+            public String handle(InputStream body, String charset) {
+                return charset;
+            }
+        });
+    }
+}
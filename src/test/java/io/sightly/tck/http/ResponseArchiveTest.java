@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright 2014 Adobe Systems Incorporated
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package io.sightly.tck.http;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.httpclient.Header;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class ResponseArchiveTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRecordReplay() throws IOException {
+        File file = new File(folder.getRoot(), "responses.archive");
+        ResponseRecorder recorder = ResponseRecorder.create(file);
+        Header[] headers = {new Header("Content-Type", "text/html; charset=ISO-8859-1"), new Header("X-Engine", "htl")};
+        recorder.record("http://localhost:8080/sightlytck/a.html", 200, "ISO-8859-1", headers, "<p>caf\u00e9</p>".getBytes("ISO-8859-1"));
+        recorder.record("http://localhost:8080/sightlytck/a.html", 500, "UTF-8", new Header[0], new byte[0]);
+        recorder.record("http://localhost:8080/sightlytck/missing.html?x=1", 404, "UTF-8", new Header[0], new byte[0]);
+        assertEquals(2, recorder.getResponses());
+        recorder.close();
+
+        ResponseArchive archive = ResponseArchive.open(file);
+        assertEquals(2, archive.getResponses());
+        ResponseArchive.Response response = archive.get("http://example.com/sightlytck/a.html");
+        assertEquals(200, response.getStatusCode());
+        assertEquals("ISO-8859-1", response.getCharset());
+        assertEquals(2, response.getHeaders().length);
+        assertEquals("htl", response.getHeaders()[1].getValue());
+        assertEquals("<p>caf\u00e9</p>", IOUtils.toString(response.openBody(), "ISO-8859-1"));
+        assertEquals(404, archive.get("http://example.com/sightlytck/missing.html?x=1").getStatusCode());
+        assertNull(archive.get("http://example.com/sightlytck/missing.html"));
+
+        Client client = new Client();
+        try {
+            client.setReplayArchive(archive);
+            // nothing listens on the URL's port, the response comes from the archive
+            assertEquals("<p>caf\u00e9</p>", client.getStringContent("http://127.0.0.1:1/sightlytck/a.html", 200));
+            try {
+                client.getStringContent("http://127.0.0.1:1/sightlytck/missing.html?x=1", 200);
+                fail("Expected a ClientException for an unexpected status code.");
+            } catch (ClientException e) {
+                assertEquals("Received status code 404, expected 200 - url http://127.0.0.1:1/sightlytck/missing.html?x=1", e.getMessage());
+            }
+        } finally {
+            client.shutdown();
+        }
+    }
+
+    @Test
+    public void testContextPath() throws IOException {
+        File file = new File(folder.getRoot(), "responses.archive");
+        ResponseRecorder recorder = ResponseRecorder.create(file, "http://localhost:4502/ctx");
+        recorder.record("http://localhost:4502/ctx/sightlytck/a.html?x=1", 200, "UTF-8", new Header[0], "<p>a</p>".getBytes("UTF-8"));
+        recorder.close();
+
+        ResponseArchive archive = ResponseArchive.open(file, "http://localhost/");
+        assertEquals("<p>a</p>", IOUtils.toString(archive.get("http://localhost/sightlytck/a.html?x=1").openBody(), "UTF-8"));
+        assertNull(archive.get("http://localhost/ctx/sightlytck/a.html?x=1"));
+        assertEquals(200, ResponseArchive.open(file, "http://example.com/other").get("http://example.com/other/sightlytck/a.html?x=1")
+                .getStatusCode());
+        assertNull(ResponseArchive.open(file).get("http://localhost:4502/ctx/sightlytck/a.html?x=1"));
+    }
+
+    @Test
+    public void testIncompleteArchive() throws IOException {
+        File file = new File(folder.getRoot(), "responses.archive");
+        ResponseRecorder recorder = ResponseRecorder.create(file);
+        recorder.record("http://localhost/a.html", 200, "UTF-8", new Header[0], new byte[10]);
+        recorder.close();
+        byte[] bytes = FileUtils.readFileToByteArray(file);
+        byte[] truncated = new byte[bytes.length - 1];
+        System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+        FileUtils.writeByteArrayToFile(file, truncated);
+        try {
+            ResponseArchive.open(file);
+            fail("Expected an IOException for a truncated archive.");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+}
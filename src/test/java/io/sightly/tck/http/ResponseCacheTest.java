@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * Copyright 2014 Adobe Systems Incorporated
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package io.sightly.tck.http;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class ResponseCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private volatile String body = "<div>v1</div>";
+    private final AtomicInteger fullResponses = new AtomicInteger();
+    private final AtomicInteger notModifiedResponses = new AtomicInteger();
+
+    @Rule
+    public StubServer server = new StubServer(new HttpHandler() {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            String current = body;
+            String etag = "\"" + Integer.toHexString(current.hashCode()) + "\"";
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModifiedResponses.incrementAndGet();
+                StubServer.respond(exchange, 304, new byte[0]);
+            } else {
+                fullResponses.incrementAndGet();
+                exchange.getResponseHeaders().set("ETag", etag);
+                exchange.getResponseHeaders().set("Content-Type", "text/html; charset=UTF-8");
+                StubServer.respond(exchange, 200, current.getBytes("UTF-8"));
+            }
+        }
+    });
+
+    @Test
+    public void testRevalidation() throws IOException {
+        String url = server.getUrl() + "/page.html";
+        Client client = new Client();
+        try {
+            client.setResponseCache(new ResponseCache(folder.getRoot(), ResponseCache.DEFAULT_MAX_SIZE));
+            assertEquals("<div>v1</div>", client.getStringContent(url, 200));
+            // a new cache instance reads the entries written by the previous one, like a later run would
+            client.setResponseCache(new ResponseCache(folder.getRoot(), ResponseCache.DEFAULT_MAX_SIZE));
+            assertEquals("<div>v1</div>", client.getStringContent(url, 200));
+            assertEquals(1, fullResponses.get());
+            assertEquals(1, notModifiedResponses.get());
+            body = "<div>v2</div>";
+            assertEquals("<div>v2</div>", client.getStringContent(url, 200));
+            assertEquals("<div>v2</div>", client.getStringContent(url, 200));
+            assertEquals(2, fullResponses.get());
+            assertEquals(2, notModifiedResponses.get());
+        } finally {
+            client.shutdown();
+        }
+    }
+
+    @Test
+    public void testKeysAndEviction() throws IOException {
+        File root = folder.getRoot();
+        ResponseCache cache = new ResponseCache(root, 1024);
+        byte[] body = new byte[300];
+        cache.put("http://localhost/a.html", null, new ResponseCache.Entry(200, "\"a\"", null, "UTF-8", null, body));
+        cache.put("http://localhost/a.html", "admin", new ResponseCache.Entry(200, "\"b\"", null, "UTF-8", null, body));
+        assertEquals("\"a\"", cache.get("http://localhost/a.html", null).getETag());
+        assertEquals("\"b\"", cache.get("http://localhost/a.html", "admin").getETag());
+        assertNull(cache.get("http://localhost/a.html", "other"));
+        cache.put("http://localhost/b.html", null,
+                new ResponseCache.Entry(200, null, "Thu, 01 Jan 2015 00:00:00 GMT", "UTF-8", null, body));
+        // the anonymous entry is the least recently used one
+        assertEquals(2, cache.getEntries());
+        assertNull(cache.get("http://localhost/a.html", null));
+        assertNotNull(cache.get("http://localhost/a.html", "admin"));
+        ResponseCache.Entry entry = cache.get("http://localhost/b.html", null);
+        assertNotNull(entry);
+        assertArrayEquals(body, entry.getBody());
+        assertEquals("Thu, 01 Jan 2015 00:00:00 GMT", entry.getLastModified());
+        cache.put("http://localhost/c.html", null, new ResponseCache.Entry(200, "\"c\"", null, "UTF-8", null, new byte[2048]));
+        assertNull(cache.get("http://localhost/c.html", null));
+        assertEquals(2, new ResponseCache(root, 1024).getEntries());
+        assertEquals(1, new ResponseCache(root, 500).getEntries());
+    }
+}
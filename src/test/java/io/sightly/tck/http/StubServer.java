@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright 2014 Adobe Systems Incorporated
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package io.sightly.tck.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.rules.ExternalResource;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A JUnit rule running a local HTTP server on an ephemeral port for the duration of each test. All the requests are answered by
+ * the given handler, on a thread pool so that concurrent requests are served concurrently.
+ */
+public class StubServer extends ExternalResource {
+
+    private final HttpHandler handler;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public StubServer(HttpHandler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * Sends a response with the given status code and a {@code Content-Length} header, then closes the exchange.
+     *
+     * @param exchange   the exchange
+     * @param statusCode the status code
+     * @param body       the response body; an empty body sends no body at all
+     * @throws IOException if the response cannot be written
+     */
+    public static void respond(HttpExchange exchange, int statusCode, byte[] body) throws IOException {
+        send(exchange, statusCode, body, body.length == 0 ? -1 : body.length);
+    }
+
+    /**
+     * Sends a response with the given status code using the chunked transfer encoding, without a {@code Content-Length} header,
+     * then closes the exchange.
+     *
+     * @param exchange   the exchange
+     * @param statusCode the status code
+     * @param body       the response body
+     * @throws IOException if the response cannot be written
+     */
+    public static void respondChunked(HttpExchange exchange, int statusCode, byte[] body) throws IOException {
+        send(exchange, statusCode, body, 0);
+    }
+
+    /**
+     * Returns the server's base URL, without a trailing slash.
+     *
+     * @return the base URL
+     */
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @Override
+    protected void before() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0), 0);
+        server.createContext("/", handler);
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    @Override
+    protected void after() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private static void send(HttpExchange exchange, int statusCode, byte[] body, long responseLength) throws IOException {
+        try {
+            exchange.sendResponseHeaders(statusCode, responseLength);
+            if (responseLength >= 0) {
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/*******************************************************************************
+ * Copyright 2014 Adobe Systems Incorporated
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package io.sightly.tck.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class HistogramTest {
+
+    private static final long MILLISECOND = 1000000L;
+
+    @Test
+    public void testRecord() {
+        Histogram histogram = new Histogram();
+        assertEquals(0, histogram.getPercentile(50));
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * MILLISECOND);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(5050 * MILLISECOND, histogram.getSum());
+        assertEquals(100 * MILLISECOND, histogram.getMax());
+        long[] counts = histogram.getBucketCounts();
+        assertEquals(Histogram.BOUNDS.length + 1, counts.length);
+        // 1ms is in the (0.5ms, 1ms] bucket, 2ms in (1ms, 2.5ms], 3ms to 5ms in (2.5ms, 5ms]
+        assertEquals(1, counts[3]);
+        assertEquals(1, counts[4]);
+        assertEquals(3, counts[5]);
+        assertEquals(50 * MILLISECOND, histogram.getPercentile(50));
+        assertEquals(100 * MILLISECOND, histogram.getPercentile(90));
+        assertEquals(100 * MILLISECOND, histogram.getPercentile(99));
+    }
+
+    @Test
+    public void testOverflow() {
+        Histogram histogram = new Histogram();
+        histogram.record(20000 * MILLISECOND);
+        assertEquals(1, histogram.getBucketCounts()[Histogram.BOUNDS.length]);
+        assertEquals(20000 * MILLISECOND, histogram.getPercentile(50));
+    }
+}
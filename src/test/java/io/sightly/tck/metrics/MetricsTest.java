@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * Copyright 2014 Adobe Systems Incorporated
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package io.sightly.tck.metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MetricsTest {
+
+    private static final long MILLISECOND = 1000000L;
+    private static final String URL = "http://localhost/a.html?q=\"b\"\\c\nd";
+    private static final String ESCAPED_URL = "http://localhost/a.html?q=\\\"b\\\"\\\\c\\nd";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void setUp() {
+        Metrics.reset();
+        Metrics.record(Phase.CONNECT, URL, 2 * MILLISECOND);
+        Metrics.recordCase("s: g - #a", URL, "exists", MILLISECOND);
+        Metrics.recordBytes(URL, 100, 300);
+    }
+
+    @After
+    public void tearDown() {
+        Metrics.reset();
+    }
+
+    @Test
+    public void testJSON() {
+        JSONObject json = Metrics.toJSON();
+        JSONObject phases = json.getJSONObject("phases");
+        assertEquals(Phase.values().length, phases.length());
+        JSONObject connect = phases.getJSONObject("connect");
+        assertEquals(1, connect.getLong("count"));
+        assertEquals(2.0, connect.getDouble("sum"), 1e-9);
+        assertEquals(2.0, connect.getDouble("max"), 1e-9);
+        assertEquals(2.0, connect.getDouble("p50"), 1e-9);
+        JSONArray buckets = connect.getJSONArray("buckets");
+        assertEquals(Histogram.BOUNDS.length + 1, buckets.length());
+        assertEquals("0.0025", buckets.getJSONObject(4).getString("le"));
+        assertEquals(1, buckets.getJSONObject(4).getLong("count"));
+        assertEquals("+Inf", buckets.getJSONObject(Histogram.BOUNDS.length).getString("le"));
+        assertEquals(1, phases.getJSONObject("evaluation").getLong("count"));
+        assertEquals(0, phases.getJSONObject("batch_evaluation").getLong("count"));
+        assertEquals(1, json.getJSONObject("methods").getJSONObject("exists").getLong("count"));
+        assertEquals(100, json.getJSONObject("bytes").getLong("wire"));
+        assertEquals(300, json.getJSONObject("bytes").getLong("decoded"));
+
+        JSONObject url = json.getJSONObject("urls").getJSONObject(URL);
+        assertEquals(2.0, url.getDouble("connect"), 1e-9);
+        assertEquals(1.0, url.getDouble("evaluation"), 1e-9);
+        assertEquals(0.0, url.getDouble("download"), 1e-9);
+        assertEquals(1, url.getInt("cases"));
+        assertEquals(100, url.getLong("wireBytes"));
+        assertEquals(300, url.getLong("decodedBytes"));
+
+        JSONArray cases = json.getJSONArray("cases");
+        assertEquals(1, cases.length());
+        assertEquals("s: g - #a", cases.getJSONObject(0).getString("name"));
+        assertEquals(URL, cases.getJSONObject(0).getString("url"));
+        assertEquals("exists", cases.getJSONObject(0).getString("method"));
+        assertEquals(1.0, cases.getJSONObject(0).getDouble("evaluation"), 1e-9);
+    }
+
+    @Test
+    public void testPrometheus() throws IOException {
+        StringWriter writer = new StringWriter();
+        Metrics.writePrometheus(writer);
+        List<String> lines = Arrays.asList(writer.toString().split("\n"));
+        assertTrue(lines.contains("# TYPE tck_phase_seconds histogram"));
+        assertTrue(lines.contains("tck_phase_seconds_bucket{phase=\"connect\",le=\"0.001\"} 0"));
+        assertTrue(lines.contains("tck_phase_seconds_bucket{phase=\"connect\",le=\"0.0025\"} 1"));
+        assertTrue(lines.contains("tck_phase_seconds_bucket{phase=\"connect\",le=\"+Inf\"} 1"));
+        assertTrue(lines.contains("tck_phase_seconds_sum{phase=\"connect\"} 0.002"));
+        assertTrue(lines.contains("tck_phase_seconds_count{phase=\"connect\"} 1"));
+        assertTrue(lines.contains("# TYPE tck_evaluation_seconds histogram"));
+        assertTrue(lines.contains("tck_evaluation_seconds_count{method=\"exists\"} 1"));
+        assertTrue(lines.contains("# TYPE tck_response_bytes_total counter"));
+        assertTrue(lines.contains("tck_response_bytes_total{encoding=\"wire\"} 100"));
+        assertTrue(lines.contains("tck_response_bytes_total{encoding=\"decoded\"} 300"));
+        assertTrue(lines.contains("# TYPE tck_url_phase_seconds gauge"));
+        // the quotes, backslash and line feed of the URL are escaped, so that the sample stays on one line
+        assertTrue(lines.contains("tck_url_phase_seconds{url=\"" + ESCAPED_URL + "\",phase=\"evaluation\"} 0.001"));
+        for (String line : lines) {
+            assertTrue(line, line.startsWith("# HELP tck_") || line.startsWith("# TYPE tck_") ||
+                    line.matches("tck_[a-z_]+\\{([a-z]+=\"([^\"\\\\]|\\\\.)*\",?)+\\} [0-9.E-]+"));
+        }
+    }
+
+    @Test
+    public void testExport() throws IOException {
+        File metrics = new File(folder.getRoot(), "metrics");
+        Metrics.export(metrics);
+        JSONObject json = new JSONObject(FileUtils.readFileToString(new File(metrics, Metrics.JSON_FILE), "UTF-8"));
+        assertEquals(Metrics.toJSON().toString(), json.toString());
+        StringWriter writer = new StringWriter();
+        Metrics.writePrometheus(writer);
+        assertEquals(writer.toString(), FileUtils.readFileToString(new File(metrics, Metrics.PROMETHEUS_FILE), "UTF-8"));
+    }
+}
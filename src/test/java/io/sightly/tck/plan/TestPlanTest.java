@@ -0,0 +1,198 @@
+/*******************************************************************************
+ * Copyright 2014 Adobe Systems Incorporated
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package io.sightly.tck.plan;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.lang.StringUtils;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestPlanTest {
+
+    private static final String DEFINITION = "{'suite': 's', 'url': '/s.html', 'method': 'exists', 'expectedMarkup': 's.out', 'groups': [" +
+            "{'name': 'g1', 'expectedStatusCode': 404, 'cases': [{'selector': '#a'}, {'selector': '#b', 'positive': false}]}," +
+            "{'name': 'g2', 'url': '/g2.html', 'method': 'hasChildren', 'cases': [{'selector': '#c', 'value': 3}, " +
+            "{'selector': '#d', 'method': 'hasAttributeValue', 'attribute': 'x', 'value': 'y'}]}]}";
+
+    @Test
+    public void testInheritance() {
+        List<PlannedCase> cases = TestPlan.compile(Collections.singletonList(new JSONObject(DEFINITION))).getCases();
+        assertEquals(4, cases.size());
+        PlannedCase a = cases.get(0);
+        assertEquals("s", a.getSuite());
+        assertEquals("g1", a.getGroup());
+        assertEquals(Method.EXISTS, a.getMethod());
+        assertEquals("/s.html", a.getUrl());
+        assertEquals("s.out", a.getExpectedMarkup());
+        assertEquals(404, a.getExpectedStatusCode());
+        assertTrue(a.isPositive());
+        assertFalse(cases.get(1).isPositive());
+        PlannedCase c = cases.get(2);
+        assertEquals(Method.HAS_CHILDREN, c.getMethod());
+        assertEquals("/g2.html", c.getUrl());
+        assertEquals("3", c.getValue());
+        assertEquals(404, c.getExpectedStatusCode());
+        PlannedCase d = cases.get(3);
+        assertEquals(Method.HAS_ATTRIBUTE_VALUE, d.getMethod());
+        assertEquals("x", d.getAttribute());
+        assertEquals("y", d.getValue());
+    }
+
+    @Test
+    public void testBudgetsInheritance() {
+        String definition = DEFINITION.replace("'suite': 's',", "'suite': 's', 'maxLatencyMs': 100,")
+                .replace("'name': 'g2',", "'name': 'g2', 'maxBytes': 2048,")
+                .replace("{'selector': '#b', 'positive': false}", "{'selector': '#b', 'positive': false, 'maxLatencyMs': 50}");
+        List<PlannedCase> cases = TestPlan.compile(Collections.singletonList(new JSONObject(definition))).getCases();
+        assertEquals(100, cases.get(0).getMaxLatencyMs());
+        assertEquals(0, cases.get(0).getMaxBytes());
+        assertEquals(50, cases.get(1).getMaxLatencyMs());
+        assertEquals(100, cases.get(2).getMaxLatencyMs());
+        assertEquals(2048, cases.get(2).getMaxBytes());
+        assertInvalid(DEFINITION.replace("'name': 'g2',", "'name': 'g2', 'maxBytes': -1,"), "'maxBytes' cannot be negative");
+    }
+
+    @Test
+    public void testFilter() {
+        TestPlan plan = TestPlan.compile(Collections.singletonList(new JSONObject(DEFINITION)));
+        assertTrue(PlanFilter.create(null, " ", "").isAll());
+        assertEquals(4, plan.filter(PlanFilter.create("S", null, null)).getCases().size());
+        assertEquals(0, plan.filter(PlanFilter.create("t*", null, null)).getCases().size());
+        List<PlannedCase> cases = plan.filter(PlanFilter.create(null, "g2", null)).getCases();
+        assertEquals(2, cases.size());
+        assertEquals("#c", cases.get(0).getSelector());
+        cases = plan.filter(PlanFilter.create("*", "!g2", "#?, !#b")).getCases();
+        assertEquals(1, cases.size());
+        assertEquals("#a", cases.get(0).getSelector());
+    }
+
+    @Test
+    public void testFilterSelectorGroup() {
+        TestPlan plan = TestPlan.compile(Collections.singletonList(new JSONObject(DEFINITION.replace("'#b'", "'div, span'"))));
+        List<PlannedCase> cases = plan.filter(PlanFilter.create(null, null, "div\\, span")).getCases();
+        assertEquals(1, cases.size());
+        assertEquals("div, span", cases.get(0).getSelector());
+        cases = plan.filter(PlanFilter.create(null, null, "#a, div\\, *")).getCases();
+        assertEquals(2, cases.size());
+        assertEquals("#a", cases.get(0).getSelector());
+        assertEquals("div, span", cases.get(1).getSelector());
+        // without the escape, the comma separates two patterns, neither of which matches the whole selector
+        assertEquals(0, plan.filter(PlanFilter.create(null, null, "div, span")).getCases().size());
+    }
+
+    @Test
+    public void testShard() {
+        List<PlannedCase> cases = new ArrayList<PlannedCase>();
+        String[] urls = {"/a.html", "/a.html", "/a.html", "/b.html", "/b.html", "/c.html", "/d.html", "/e.html"};
+        for (String url : urls) {
+            cases.add(new PlannedCase("s", "g", Method.EXISTS, url, null, 200, "#a", null, null, true, 0, 0));
+        }
+        TestPlan plan = TestPlan.of(cases);
+        Set<String> all = new HashSet<String>();
+        int[] sizes = new int[3];
+        for (int i = 1; i <= 3; i++) {
+            Set<String> shardUrls = Shard.parse(i + "/3").getUrls(plan);
+            assertEquals(shardUrls, Shard.create(i, 3).getUrls(plan));
+            for (String url : shardUrls) {
+                assertTrue(url + " is assigned to more than one shard", all.add(url));
+                for (String caseUrl : urls) {
+                    if (caseUrl.equals(url)) {
+                        sizes[i - 1]++;
+                    }
+                }
+            }
+        }
+        assertEquals(5, all.size());
+        assertTrue(Arrays.toString(sizes), Arrays.equals(new int[] {3, 3, 2}, sizes));
+        assertEquals(new HashSet<String>(Arrays.asList(urls)), Shard.parse(" 1 / 1 ").getUrls(plan));
+        for (String spec : new String[] {"0/2", "3/2", "1", "a/b", "1/2/3", null}) {
+            try {
+                Shard.parse(spec);
+                fail("Expected an IllegalArgumentException for shard " + spec + ".");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testWriteRead() throws IOException {
+        // the expected value is longer than the 64KB supported by DataOutputStream.writeUTF
+        String largeValue = StringUtils.repeat("<p>\u00e9</p>", 10000);
+        JSONObject large = new JSONObject(DEFINITION.replace("'s'", "'u'"));
+        large.getJSONArray("groups").getJSONObject(0).getJSONArray("cases")
+                .put(new JSONObject().put("selector", "#large").put("method", "innerHTMLEquals").put("value", largeValue));
+        TestPlan plan = TestPlan.compile(Arrays.asList(new JSONObject(DEFINITION),
+                new JSONObject(DEFINITION.replace("'s'", "'t'").replace("'name': 'g1',", "'name': 'g1', 'maxLatencyMs': 10, 'maxBytes': 20,")),
+                large));
+        assertEquals(largeValue, plan.getCases().get(10).getValue());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        plan.write(out);
+        TestPlan read = TestPlan.read(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(plan.getCases().size(), read.getCases().size());
+        for (int i = 0; i < plan.getCases().size(); i++) {
+            PlannedCase expected = plan.getCases().get(i);
+            PlannedCase actual = read.getCases().get(i);
+            assertEquals(expected.getSuite(), actual.getSuite());
+            assertEquals(expected.getGroup(), actual.getGroup());
+            assertEquals(expected.getMethod(), actual.getMethod());
+            assertEquals(expected.getUrl(), actual.getUrl());
+            assertEquals(expected.getExpectedMarkup(), actual.getExpectedMarkup());
+            assertEquals(expected.getExpectedStatusCode(), actual.getExpectedStatusCode());
+            assertEquals(expected.getSelector(), actual.getSelector());
+            assertEquals(expected.getValue(), actual.getValue());
+            assertEquals(expected.getAttribute(), actual.getAttribute());
+            assertEquals(expected.isPositive(), actual.isPositive());
+            assertEquals(expected.getMaxLatencyMs(), actual.getMaxLatencyMs());
+            assertEquals(expected.getMaxBytes(), actual.getMaxBytes());
+        }
+        assertNull(read.getCases().get(0).getAttribute());
+    }
+
+    @Test
+    public void testMalformedDefinitions() {
+        assertInvalid(DEFINITION.replace("'method': 'exists'", "'method': 'unknown'"), "unknown test method");
+        assertInvalid(DEFINITION.replace("'url': '/s.html', ", ""), "missing 'url'");
+        assertInvalid(DEFINITION.replace("{'selector': '#a'}", "{'value': '#a'}"), "case 0");
+        assertInvalid(DEFINITION.replace("'attribute': 'x', ", ""), "group 'g2', case 1");
+        assertInvalid(DEFINITION.replace("'value': 3", "'value': 'three'"), "'three' is not an integer");
+        assertInvalid(DEFINITION.replace("'value': 3", "'value': -1"), "cannot be negative");
+    }
+
+    private static void assertInvalid(String definition, String message) {
+        try {
+            TestPlan.compile(Collections.singletonList(new JSONObject(definition)));
+            fail("Expected the definition to be rejected: " + definition);
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(message));
+        }
+    }
+}
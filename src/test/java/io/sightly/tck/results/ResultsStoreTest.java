@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * Copyright 2014 Adobe Systems Incorporated
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package io.sightly.tck.results;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class ResultsStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSaveLoad() throws IOException {
+        File file = new File(folder.getRoot(), "results/tck-results.json");
+        ResultsStore store = ResultsStore.load(file);
+        assertNull(store.getOutcome("a"));
+        assertNull(store.getHash("http://localhost/a.html"));
+        store.setOutcome("a", Outcome.PASSED);
+        store.setOutcome("b", Outcome.FAILED);
+        store.setOutcome("c", Outcome.ERROR);
+        store.setHash("http://localhost/a.html", "0123");
+        store.save();
+        store.setOutcome("a", Outcome.FAILED);
+        store.save();
+
+        ResultsStore loaded = ResultsStore.load(file);
+        assertEquals(Outcome.FAILED, loaded.getOutcome("a"));
+        assertEquals(Outcome.FAILED, loaded.getOutcome("b"));
+        assertEquals(Outcome.ERROR, loaded.getOutcome("c"));
+        assertEquals("0123", loaded.getHash("http://localhost/a.html"));
+        assertEquals(1, folder.getRoot().listFiles()[0].list().length);
+    }
+
+    @Test
+    public void testMerge() throws IOException {
+        ResultsStore first = ResultsStore.create(folder.newFile("tck-results-1-of-2.json"));
+        first.setOutcome("a", Outcome.PASSED);
+        first.setOutcome("b", Outcome.FAILED);
+        first.setHash("http://localhost/a.html", "0123");
+        first.setLastRun(new RunSummary(2, 1500, Collections.singletonMap("b", "b: failed")));
+        first.save();
+        ResultsStore second = ResultsStore.create(new File(folder.getRoot(), "tck-results-2-of-2.json"));
+        second.setOutcome("c", Outcome.PASSED);
+        second.setLastRun(new RunSummary(1, 2500, Collections.<String, String>emptyMap()));
+        second.save();
+
+        ResultsStore merged = ResultsStore.create(new File(folder.getRoot(), "tck-results.json"));
+        List<RunSummary> runs = new ArrayList<RunSummary>();
+        for (ResultsStore store : Arrays.asList(ResultsStore.load(first.getFile()), ResultsStore.load(second.getFile()))) {
+            merged.putAll(store);
+            runs.add(store.getLastRun());
+        }
+        RunSummary summary = RunSummary.merge(runs);
+        assertEquals(3, summary.getTests());
+        assertEquals(2500, summary.getTime());
+        assertEquals(Collections.singletonMap("b", "b: failed"), summary.getFailures());
+        assertEquals(Outcome.FAILED, merged.getOutcome("b"));
+        assertEquals(Outcome.PASSED, merged.getOutcome("c"));
+        assertEquals("0123", merged.getHash("http://localhost/a.html"));
+        assertNull(merged.getLastRun());
+    }
+
+    @Test
+    public void testInvalidFile() throws IOException {
+        File file = folder.newFile("tck-results.json");
+        FileUtils.writeStringToFile(file, "{\"cases\": {}}", "UTF-8");
+        try {
+            ResultsStore.load(file);
+            fail("Expected an IOException for an unsupported results file.");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * Copyright 2014 Adobe Systems Incorporated
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package io.sightly.tck.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ReferenceServerTest {
+
+    private ReferenceServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new ReferenceServer();
+        server.addPage("/sightlytck/page.html", 200, "<div>page</div>".getBytes("UTF-8"));
+        server.addPage("/sightlytck/error.html", 500, "<div>error</div>".getBytes("UTF-8"));
+        server.start(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0), 2);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void testPages() throws IOException {
+        assertEquals(2, server.getPages());
+        HttpURLConnection connection = open("/sightlytck/page.html", "GET");
+        assertEquals(200, connection.getResponseCode());
+        assertEquals("text/html; charset=UTF-8", connection.getContentType());
+        assertEquals("<div>page</div>", read(connection.getInputStream()));
+        connection = open("/sightlytck/error.html", "GET");
+        assertEquals(500, connection.getResponseCode());
+        assertEquals("<div>error</div>", read(connection.getErrorStream()));
+    }
+
+    @Test
+    public void testErrors() throws IOException {
+        assertEquals(404, open("/sightlytck/missing.html", "GET").getResponseCode());
+        assertEquals(405, open("/sightlytck/page.html", "POST").getResponseCode());
+    }
+
+    private HttpURLConnection open(String path, String method) throws IOException {
+        HttpURLConnection connection =
+                (HttpURLConnection) new URL("http://127.0.0.1:" + server.getPort() + path).openConnection();
+        connection.setRequestMethod(method);
+        return connection;
+    }
+
+    private static String read(InputStream in) throws IOException {
+        try {
+            return IOUtils.toString(in, "UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Copyright 2014 Adobe Systems Incorporated
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package io.sightly.tck.tests;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import org.apache.commons.lang.StringUtils;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import io.sightly.tck.http.Client;
+import io.sightly.tck.http.StubServer;
+import io.sightly.tck.plan.PlannedCase;
+import io.sightly.tck.plan.TestPlan;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TCKTestCaseTest {
+
+    private static final byte[] BODY = ("<div id=\"a\">" + StringUtils.repeat("x", 200) + "</div>").getBytes();
+    private static final long DELAY_MS = 100;
+
+    @Rule
+    public StubServer server = new StubServer(new HttpHandler() {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                Thread.sleep(DELAY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            StubServer.respond(exchange, 200, BODY);
+        }
+    });
+
+    private Client client;
+    private int pages;
+
+    @Before
+    public void setUp() {
+        client = new Client();
+    }
+
+    @After
+    public void tearDown() {
+        client.shutdown();
+    }
+
+    @Test
+    public void testLatencyBudgetExceeded() throws Throwable {
+        assertBudgetExceeded(createTest("'maxLatencyMs': 10"), "latency budget of 10 ms");
+    }
+
+    @Test
+    public void testSizeBudgetExceeded() throws Throwable {
+        assertBudgetExceeded(createTest("'maxBytes': 50"), "size budget of 50 bytes");
+    }
+
+    @Test
+    public void testBudgetsMet() throws Throwable {
+        createTest("'maxLatencyMs': 60000, 'maxBytes': " + BODY.length).runBare();
+    }
+
+    @Test
+    public void testZeroBudgetsDisabled() throws Throwable {
+        createTest("'maxLatencyMs': 0, 'maxBytes': 0").runBare();
+    }
+
+    private TCKTestCase createTest(String budgets) {
+        String definition = "{'suite': 's', 'url': '/page.html', 'method': 'exists', 'groups': [{'name': 'g', 'cases': [{'selector': '#a', " +
+                budgets + "}]}]}";
+        PlannedCase testCase = TestPlan.compile(Collections.singletonList(new JSONObject(definition))).getCases().get(0);
+        // each test fetches its own URL, as the fetched documents and statistics are kept per URL
+        String url = server.getUrl() + "/page.html?" + (pages++) + "-" + System.nanoTime();
+        return new TCKTestCase(client, url, TCKTestCase.getName(testCase), testCase);
+    }
+
+    private void assertBudgetExceeded(TCKTestCase test, String message) throws Throwable {
+        try {
+            test.runBare();
+            fail("Expected a BudgetExceededError.");
+        } catch (BudgetExceededError e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(message));
+        } finally {
+            TestBuilder.release(test.getUrl());
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*******************************************************************************
+ * Copyright 2014 Adobe Systems Incorporated
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package io.sightly.tck.tests;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import io.sightly.tck.html.HTMLExtractor;
+import io.sightly.tck.http.Client;
+import io.sightly.tck.http.StubServer;
+import io.sightly.tck.plan.PlannedCase;
+import io.sightly.tck.plan.TestPlan;
+import junit.framework.AssertionFailedError;
+import junit.framework.TestListener;
+import junit.framework.TestResult;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+public class TCKTestSuiteTest {
+
+    private static final byte[] BODY = "<div id=\"a\">a</div><p class=\"b\">b</p>".getBytes();
+    private static final int PAGES = 6;
+    private static final long DELAY_MS = 20;
+
+    private final ConcurrentMap<String, AtomicInteger> requests = new ConcurrentHashMap<String, AtomicInteger>();
+
+    @Rule
+    public StubServer server = new StubServer(new HttpHandler() {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            String path = exchange.getRequestURI().getPath();
+            AtomicInteger count = requests.putIfAbsent(path, new AtomicInteger(1));
+            if (count != null) {
+                count.incrementAndGet();
+            }
+            try {
+                Thread.sleep(DELAY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            StubServer.respond(exchange, path.startsWith("/error") ? 500 : 200, BODY);
+        }
+    });
+
+    private Client client;
+    private final List<String> urls = new ArrayList<String>();
+
+    @Before
+    public void setUp() {
+        client = new Client();
+    }
+
+    @After
+    public void tearDown() {
+        client.shutdown();
+        for (String url : urls) {
+            HTMLExtractor.release(url);
+            TestBuilder.release(url);
+        }
+    }
+
+    @Test
+    public void testParallelRun() {
+        assertRun(new TCKTestSuite(4, 0, false));
+    }
+
+    @Test
+    public void testParallelRunWithPrefetchAndBatch() {
+        assertRun(new TCKTestSuite(4, 2, true));
+    }
+
+    private void assertRun(TCKTestSuite suite) {
+        // each page has two passing cases and a failing one
+        for (int i = 0; i < PAGES; i++) {
+            addTests(suite, "/page" + i + ".html");
+        }
+        addTests(suite, "/error.html");
+        final Set<junit.framework.Test> ended = Collections.newSetFromMap(new ConcurrentHashMap<junit.framework.Test, Boolean>());
+        final AtomicInteger endedTests = new AtomicInteger();
+        final Set<String> workers = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        TestResult result = new TestResult();
+        result.addListener(new TestListener() {
+            @Override
+            public void addError(junit.framework.Test test, Throwable t) {
+            }
+
+            @Override
+            public void addFailure(junit.framework.Test test, AssertionFailedError t) {
+            }
+
+            @Override
+            public void endTest(junit.framework.Test test) {
+                endedTests.incrementAndGet();
+                ended.add(test);
+            }
+
+            @Override
+            public void startTest(junit.framework.Test test) {
+                workers.add(Thread.currentThread().getName());
+            }
+        });
+        suite.run(result);
+
+        int tests = (PAGES + 1) * 3;
+        assertEquals(tests, suite.testCount());
+        assertEquals(tests, result.runCount());
+        assertEquals(tests, endedTests.get());
+        assertEquals(tests, ended.size());
+        assertEquals(PAGES, result.failureCount());
+        assertEquals(3, result.errorCount());
+        assertEquals(suite.getThreads(), workers.size());
+
+        assertEquals(PAGES + 1, requests.size());
+        for (String path : requests.keySet()) {
+            assertEquals(path, 1, requests.get(path).get());
+        }
+        // the pages are released once their last test has run
+        for (String url : urls) {
+            assertFalse(url, HTMLExtractor.isLoaded(url));
+            assertNull(url, TestBuilder.getFetchStats(url));
+        }
+    }
+
+    private void addTests(TCKTestSuite suite, String path) {
+        String definition = "{'suite': 's', 'url': '" + path + "', 'method': 'exists', 'groups': [{'name': 'g', 'cases': [" +
+                "{'selector': '#a'}, {'selector': '.b'}, {'selector': '#missing'}]}]}";
+        String url = server.getUrl() + path;
+        urls.add(url);
+        for (PlannedCase testCase : TestPlan.compile(Collections.singletonList(new JSONObject(definition))).getCases()) {
+            suite.addTest(new TCKTestCase(client, url, TCKTestCase.getName(testCase), testCase));
+        }
+    }
+}
@@ -0,0 +1,253 @@
+/*******************************************************************************
+ * Copyright 2014 Adobe Systems Incorporated
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package io.sightly.tck.tests;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.json.JSONObject;
+import org.jsoup.nodes.Document;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import io.sightly.tck.Constants;
+import io.sightly.tck.html.HTMLExtractor;
+import io.sightly.tck.http.Client;
+import io.sightly.tck.http.ClientException;
+import io.sightly.tck.http.StubServer;
+import io.sightly.tck.plan.PlannedCase;
+import io.sightly.tck.plan.TestPlan;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestBuilderTest {
+
+    private static final byte[] BODY = "<div id=\"a\">a</div>".getBytes();
+    private static final long DELAY_MS = 50;
+
+    private final ConcurrentMap<String, AtomicInteger> requests = new ConcurrentHashMap<String, AtomicInteger>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    @Rule
+    public StubServer server = new StubServer(new HttpHandler() {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            String path = exchange.getRequestURI().getPath();
+            AtomicInteger count = requests.putIfAbsent(path, new AtomicInteger(1));
+            if (count != null) {
+                count.incrementAndGet();
+            }
+            int current = inFlight.incrementAndGet();
+            int max;
+            while ((max = maxInFlight.get()) < current && !maxInFlight.compareAndSet(max, current)) {
+                // retry
+            }
+            try {
+                Thread.sleep(DELAY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            inFlight.decrementAndGet();
+            StubServer.respond(exchange, path.startsWith("/fail") ? 500 : 200, BODY);
+        }
+    });
+
+    private Client client;
+    private final List<String> urls = new ArrayList<String>();
+
+    @Before
+    public void setUp() {
+        client = new Client();
+    }
+
+    @After
+    public void tearDown() {
+        client.shutdown();
+        TestBuilder.shutdownClient();
+        System.clearProperty(Constants.SYS_PROP_MAX_CONNECTIONS_PER_HOST);
+        System.clearProperty(Constants.SYS_PROP_MAX_CONNECTIONS);
+        System.clearProperty(Constants.SYS_PROP_IDLE_CONNECTION_TIMEOUT);
+        for (String url : urls) {
+            HTMLExtractor.release(url);
+            TestBuilder.release(url);
+        }
+    }
+
+    @Test
+    public void testPrefetchFetchesEachUrlOnce() {
+        List<junit.framework.Test> tests = new ArrayList<junit.framework.Test>();
+        for (int i = 0; i < 6; i++) {
+            // two tests per URL
+            tests.add(createTest("/page" + i + ".html"));
+            tests.add(createTest("/page" + i + ".html"));
+        }
+        TestBuilder.prefetch(tests, 2);
+        assertEquals(6, requests.size());
+        for (int i = 0; i < 6; i++) {
+            String url = server.getUrl() + "/page" + i + ".html";
+            assertEquals(1, requests.get("/page" + i + ".html").get());
+            assertTrue(HTMLExtractor.isLoaded(url));
+            assertNotNull(TestBuilder.getFetchStats(url));
+            assertTrue(HTMLExtractor.exists(url, "#a"));
+        }
+        // the requests overlap, but never more than the given number of threads
+        assertEquals(2, maxInFlight.get());
+
+        // the loaded pages are not fetched again
+        TestBuilder.prefetch(tests, 2);
+        for (AtomicInteger count : requests.values()) {
+            assertEquals(1, count.get());
+        }
+    }
+
+    @Test
+    public void testPrefetchCachesFailures() {
+        List<junit.framework.Test> tests = new ArrayList<junit.framework.Test>();
+        tests.add(createTest("/fail.html"));
+        tests.add(createTest("/page.html"));
+        tests.add(createTest("/fail.html"));
+        TestBuilder.prefetch(tests, 1);
+        assertEquals(1, requests.get("/fail.html").get());
+        assertEquals(1, requests.get("/page.html").get());
+        assertTrue(HTMLExtractor.exists(server.getUrl() + "/page.html", "#a"));
+
+        // the failure is cached and reported to every test using the URL, without fetching it again
+        String url = server.getUrl() + "/fail.html";
+        assertTrue(HTMLExtractor.isLoaded(url));
+        for (int i = 0; i < 2; i++) {
+            try {
+                HTMLExtractor.load(url, new Callable<Document>() {
+                    @Override
+                    public Document call() {
+                        throw new AssertionError("The failed URL was loaded again.");
+                    }
+                });
+                fail("Expected a ClientException.");
+            } catch (ClientException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("Received status code 500, expected 200"));
+            }
+        }
+        assertEquals(1, requests.get("/fail.html").get());
+    }
+
+    @Test
+    public void testPrefetchAfterShutdown() throws InterruptedException {
+        TestBuilder.prefetch(Collections.<junit.framework.Test>singletonList(createTest("/page.html")), 1);
+        client.shutdown();
+        // the client's asynchronous requests are executed by threads which are stopped with the client
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith("tck-http-client-")) {
+                thread.join(5000);
+                assertFalse(thread.getName(), thread.isAlive());
+            }
+        }
+        try {
+            client.getContentAsync(server.getUrl() + "/other.html", 200, null, null);
+            fail("Expected a RejectedExecutionException.");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+
+        // the requests which cannot be sent fail without blocking the prefetch
+        List<junit.framework.Test> tests = new ArrayList<junit.framework.Test>();
+        tests.add(createTest("/a.html"));
+        tests.add(createTest("/b.html"));
+        TestBuilder.prefetch(tests, 1);
+        assertTrue(HTMLExtractor.isLoaded(server.getUrl() + "/a.html"));
+        assertTrue(HTMLExtractor.isLoaded(server.getUrl() + "/b.html"));
+        assertNull(requests.get("/a.html"));
+    }
+
+    @Test
+    public void testGetClientSettings() {
+        System.setProperty(Constants.SYS_PROP_MAX_CONNECTIONS_PER_HOST, "3");
+        System.setProperty(Constants.SYS_PROP_MAX_CONNECTIONS, "7");
+        System.setProperty(Constants.SYS_PROP_IDLE_CONNECTION_TIMEOUT, "1500");
+        Client shared = TestBuilder.getClient();
+        assertEquals(3, shared.getMaxConnectionsPerHost());
+        assertEquals(7, shared.getMaxConnections());
+        assertEquals(1500, shared.getIdleConnectionTimeout());
+    }
+
+    @Test
+    public void testGetClientDefaults() {
+        Client shared = TestBuilder.getClient();
+        assertEquals(Client.DEFAULT_MAX_CONNECTIONS_PER_HOST, shared.getMaxConnectionsPerHost());
+        assertEquals(Client.DEFAULT_MAX_CONNECTIONS, shared.getMaxConnections());
+        assertEquals(Client.DEFAULT_IDLE_CONNECTION_TIMEOUT, shared.getIdleConnectionTimeout());
+    }
+
+    @Test
+    public void testGetClientIsShared() throws InterruptedException {
+        Set<Thread> evictors = getIdleConnectionEvictors();
+        Client shared = TestBuilder.getClient();
+        assertSame(shared, TestBuilder.getClient());
+        Set<Thread> started = getIdleConnectionEvictors();
+        started.removeAll(evictors);
+        assertEquals(1, started.size());
+
+        TestBuilder.shutdownClient();
+        Thread evictor = started.iterator().next();
+        evictor.join(5000);
+        assertFalse(evictor.isAlive());
+
+        // a new client is created once the shared one was shut down
+        Client next = TestBuilder.getClient();
+        assertNotSame(shared, next);
+        assertSame(next, TestBuilder.getClient());
+    }
+
+    private static Set<Thread> getIdleConnectionEvictors() {
+        Set<Thread> evictors = new HashSet<Thread>();
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if ("tck-idle-connection-evictor".equals(thread.getName()) && thread.isAlive()) {
+                evictors.add(thread);
+            }
+        }
+        return evictors;
+    }
+
+    private TCKTestCase createTest(String path) {
+        String definition = "{'suite': 's', 'url': '" + path + "', 'method': 'exists', 'groups': [{'name': 'g', 'cases': [{'selector': " +
+                "'#a'}]}]}";
+        PlannedCase testCase = TestPlan.compile(Collections.singletonList(new JSONObject(definition))).getCases().get(0);
+        String url = server.getUrl() + path;
+        urls.add(url);
+        return new TCKTestCase(client, url, TCKTestCase.getName(testCase), testCase);
+    }
+}